@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.api;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Queries about redyeing and bleaching for other plugins.
+ * <p>Get it via {@code Bukkit.getServicesManager().load(RedyeService.class)}.
+ * All queries are answered from precomputed tables, do not allocate and may be called from any thread.</p>
+ */
+public interface RedyeService {
+
+    /**
+     * Checks if a material can be redyed by the recipes of this server.
+     * @param material the material
+     * @return true if a color recipe accepts the material, false otherwise
+     */
+    boolean isRedyeable(@NotNull Material material);
+
+    /**
+     * Checks if a material can be bleached on this server (by recipe or cauldron).
+     * @param material the material
+     * @return true if the material can be bleached, false otherwise
+     */
+    boolean isBleachable(@NotNull Material material);
+
+    /**
+     * Gets the undyed form of a colored material (e.g. TERRACOTTA for BLUE_TERRACOTTA, WHITE_WOOL for BLUE_WOOL).
+     * <p>Note: This does not consider whether bleaching is enabled.</p>
+     * @param material the colored material
+     * @return the undyed material or null if the material belongs to no redye family
+     */
+    @Nullable
+    Material getUndyedMaterial(@NotNull Material material);
+
+    /**
+     * Gets the result of redyeing a material with a dye.
+     * @param material the material
+     * @param dye the dye
+     * @return the result or null if the material cannot be redyed (see {@link #isRedyeable(Material)}) or dye is no dye
+     */
+    @Nullable
+    Material getDyedMaterial(@NotNull Material material, @NotNull Material dye);
+
+    /**
+     * Counts the redyeable items of an inventory.
+     * @param contents the contents (e.g. {@code inventory.getContents()})
+     * @return the amount of redyeable items
+     */
+    int countRedyeable(@NotNull ItemStack[] contents);
+
+    /**
+     * Counts the bleachable items of an inventory.
+     * @param contents the contents (e.g. {@code inventory.getContents()})
+     * @return the amount of bleachable items
+     */
+    int countBleachable(@NotNull ItemStack[] contents);
+
+    /**
+     * Gets the undyed forms of all items of an inventory.
+     * @param contents the contents (e.g. {@code inventory.getContents()})
+     * @param result the array to fill (at least as long as contents). result[i] will be the undyed form of contents[i] or null.
+     * @return the amount of non-null entries written to result
+     */
+    int getUndyedMaterials(@NotNull ItemStack[] contents, @NotNull Material[] result);
+}
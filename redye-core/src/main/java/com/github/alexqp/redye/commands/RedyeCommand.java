@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.commands;
+
+import com.github.alexqp.redye.main.RecipeDatapack;
+import com.github.alexqp.redye.main.StatisticsStore;
+import com.github.alexqp.redye.main.TraceBuffer;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class RedyeCommand implements CommandExecutor, TabCompleter {
+
+    private static final int topLimit = 10;
+
+    @Nullable private final StatisticsStore statisticsStore;
+    @Nullable private final TraceBuffer traceBuffer;
+    private final RecipeDatapack recipeDatapack;
+
+    /**
+     * @param statisticsStore the statisticsStore or null if statistics are disabled
+     * @param traceBuffer the traceBuffer or null if tracing is disabled
+     * @param recipeDatapack the recipeDatapack
+     */
+    public RedyeCommand(@Nullable StatisticsStore statisticsStore, @Nullable TraceBuffer traceBuffer, @NotNull RecipeDatapack recipeDatapack) {
+        this.statisticsStore = statisticsStore;
+        this.traceBuffer = traceBuffer;
+        this.recipeDatapack = recipeDatapack;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        if (args.length == 0)
+            return false;
+
+        switch (args[0].toLowerCase()) {
+            case "stats":
+                return this.onStats(sender, label, args);
+            case "top":
+                return this.onTop(sender, label, args);
+            case "trace":
+                return this.onTrace(sender, args);
+            case "export":
+                return this.onExport(sender);
+            default:
+                return false;
+        }
+    }
+
+    private boolean checkPermission(@NotNull CommandSender sender, @NotNull String permission) {
+        if (!sender.hasPermission(permission)) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to do that.");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean checkStatistics(@NotNull CommandSender sender) {
+        if (statisticsStore == null) {
+            sender.sendMessage(ChatColor.RED + "Statistics are disabled.");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean onStats(@NotNull CommandSender sender, @NotNull String label, @NotNull String[] args) {
+        if (!this.checkPermission(sender, "redye.command.stats") || !this.checkStatistics(sender))
+            return true;
+        assert statisticsStore != null;
+
+        UUID uuid;
+        if (args.length > 1) {
+            if (!this.checkPermission(sender, "redye.command.stats.others"))
+                return true;
+            uuid = statisticsStore.getUUID(args[1]);
+            if (uuid == null) {
+                sender.sendMessage(ChatColor.RED + "There are no statistics for " + args[1] + ".");
+                return true;
+            }
+        } else if (sender instanceof Player) {
+            uuid = ((Player) sender).getUniqueId();
+        } else {
+            sender.sendMessage(ChatColor.RED + "Usage: /" + label + " stats <player>");
+            return true;
+        }
+
+        String name = statisticsStore.getName(uuid);
+        sender.sendMessage(ChatColor.GOLD + "Redye statistics of " + (name != null ? name : uuid.toString()) + ":");
+        for (StatisticsStore.Type type : StatisticsStore.Type.values()) {
+            sender.sendMessage(ChatColor.GRAY + type.getConfigName() + ": " + ChatColor.WHITE + statisticsStore.getCount(uuid, type));
+        }
+        return true;
+    }
+
+    private boolean onTop(@NotNull CommandSender sender, @NotNull String label, @NotNull String[] args) {
+        if (!this.checkPermission(sender, "redye.command.top") || !this.checkStatistics(sender))
+            return true;
+        assert statisticsStore != null;
+
+        StatisticsStore.Type type = StatisticsStore.Type.REDYED;
+        if (args.length > 1) {
+            type = null;
+            for (StatisticsStore.Type value : StatisticsStore.Type.values()) {
+                if (value.getConfigName().equalsIgnoreCase(args[1]))
+                    type = value;
+            }
+            if (type == null) {
+                sender.sendMessage(ChatColor.RED + "Usage: /" + label + " top [redyed|bleached]");
+                return true;
+            }
+        }
+
+        sender.sendMessage(ChatColor.GOLD + "Top " + type.getConfigName() + ":");
+        int rank = 1;
+        for (UUID uuid : statisticsStore.getTop(type, topLimit)) {
+            String name = statisticsStore.getName(uuid); // unknown if the server never cached the player's name
+            sender.sendMessage(ChatColor.GRAY + "" + rank++ + ". " + ChatColor.WHITE + (name != null ? name : uuid.toString()) + ChatColor.GRAY + " - " + statisticsStore.getCount(uuid, type));
+        }
+        return true;
+    }
+
+    private boolean onTrace(@NotNull CommandSender sender, @NotNull String[] args) {
+        if (!this.checkPermission(sender, "redye.command.trace"))
+            return true;
+        if (traceBuffer == null) {
+            sender.sendMessage(ChatColor.RED + "The trace buffer is disabled (see debug.trace_buffer_size).");
+            return true;
+        }
+
+        if (args.length > 1 && args[1].equalsIgnoreCase("clear")) {
+            traceBuffer.clear();
+            sender.sendMessage(ChatColor.GOLD + "Cleared the trace buffer.");
+            return true;
+        }
+
+        List<String> lines = traceBuffer.dump();
+        sender.sendMessage(ChatColor.GOLD + "Last " + lines.size() + " transformation decisions:");
+        for (String line : lines) {
+            sender.sendMessage(ChatColor.GRAY + line);
+        }
+        return true;
+    }
+
+    private boolean onExport(@NotNull CommandSender sender) {
+        if (!this.checkPermission(sender, "redye.command.export"))
+            return true;
+        if (!recipeDatapack.isSupported()) {
+            sender.sendMessage(ChatColor.RED + "The recipe data pack is not supported on this server version.");
+            return true;
+        }
+
+        try {
+            File packFolder = recipeDatapack.export();
+            sender.sendMessage(ChatColor.GOLD + "Exported the recipe data pack to " + packFolder.getPath() + ".");
+        } catch (IOException e) {
+            sender.sendMessage(ChatColor.RED + "Could not export the recipe data pack: " + e.getMessage());
+        }
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, @NotNull String[] args) {
+        List<String> completions = new ArrayList<>();
+        if (args.length == 1) {
+            for (String subCommand : new String[]{"stats", "top", "trace", "export"}) {
+                if (subCommand.startsWith(args[0].toLowerCase()))
+                    completions.add(subCommand);
+            }
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("top")) {
+            for (StatisticsStore.Type type : StatisticsStore.Type.values()) {
+                if (type.getConfigName().startsWith(args[1].toLowerCase()))
+                    completions.add(type.getConfigName());
+            }
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("trace")) {
+            if ("clear".startsWith(args[1].toLowerCase()))
+                completions.add("clear");
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("stats")) {
+            return null; // player names
+        }
+        return completions;
+    }
+}
@@ -21,34 +21,56 @@ package com.github.alexqp.redye.listeners;
 import com.github.alexqp.commons.config.ConfigChecker;
 import com.github.alexqp.commons.config.ConsoleErrorType;
 import com.github.alexqp.commons.messages.ConsoleMessage;
+import com.github.alexqp.redye.main.DebugLog;
 import com.github.alexqp.redye.main.InternalsProvider;
+import com.github.alexqp.redye.main.PermissionCache;
 import com.github.alexqp.redye.main.Redye;
 import com.github.alexqp.redye.main.RedyeMaterial;
+import com.github.alexqp.redye.main.StatisticsStore;
+import com.github.alexqp.redye.main.TraceBuffer;
 import com.google.common.collect.Range;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.data.Levelled;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Item;
+import org.bukkit.entity.Player;
+import org.bukkit.event.block.Action;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.ItemMergeEvent;
 import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
 
 public class CauldronItemDropListener implements Listener {
 
     @Nullable
-    public static CauldronItemDropListener build(Redye plugin, InternalsProvider internals, ConfigurationSection rootSection) {
+    public static CauldronItemDropListener build(Redye plugin, InternalsProvider internals, PermissionCache permissionCache, @Nullable StatisticsStore statisticsStore, @Nullable TraceBuffer traceBuffer, ConfigurationSection rootSection) {
         ConfigChecker configChecker = new ConfigChecker(plugin);
         rootSection = configChecker.checkConfigSection(rootSection, "cauldron", ConsoleErrorType.ERROR);
         if (rootSection != null) {
@@ -60,7 +82,19 @@ public class CauldronItemDropListener implements Listener {
                 int checkEmpty = configChecker.checkInt(rootSection, "check_empty", ConsoleErrorType.WARN, 1, Range.closed(0, 2));
                 int changeWater = configChecker.checkInt(rootSection, "change_waterlevel", ConsoleErrorType.WARN, 1, Range.closed(0, 3));
 
-                return new CauldronItemDropListener(plugin, internals, enabledMaterials, checkEmpty, changeWater);
+                boolean rightClick = configChecker.checkBoolean(rootSection, "right_click", ConsoleErrorType.WARN, false);
+
+                CauldronOutputConsolidator outputConsolidator = null;
+                if (configChecker.checkBoolean(rootSection, "consolidate_output", ConsoleErrorType.WARN, true))
+                    outputConsolidator = new CauldronOutputConsolidator(plugin, configChecker.checkBoolean(rootSection, "output_to_container", ConsoleErrorType.WARN, false));
+
+                String detection = configChecker.checkString(rootSection, "detection", ConsoleErrorType.WARN, "delay");
+                boolean settle = "settle".equalsIgnoreCase(detection);
+                if (!settle && !"delay".equalsIgnoreCase(detection))
+                    ConsoleMessage.send(ConsoleErrorType.WARN, plugin, "detection was neither delay nor settle. Used delay instead.");
+                int settleTimeout = configChecker.checkInt(rootSection, "settle_timeout", ConsoleErrorType.WARN, 60, Range.closed(1, 600));
+
+                return new CauldronItemDropListener(plugin, internals, permissionCache, statisticsStore, traceBuffer, enabledMaterials, checkEmpty, changeWater, rightClick, settle ? settleTimeout : 0, outputConsolidator);
             }
         }
         return null;
@@ -68,33 +102,77 @@ public class CauldronItemDropListener implements Listener {
 
     private final JavaPlugin plugin;
     private final InternalsProvider internals;
-    private final Set<RedyeMaterial> enabledMaterials;
+    private final PermissionCache permissionCache;
+    @Nullable private final StatisticsStore statisticsStore;
+    @Nullable private final TraceBuffer traceBuffer;
+    private final EnumMap<Material, RedyeMaterial> enabledMaterials;
+    private final EnumSet<Material> familyMaterials; // colored materials of all families (enabled or not)
+    private final HashMap<RedyeMaterial, Material> undyeMaterials = new HashMap<>();
     private final int checkEmpty;
     private final int changeWater;
+    private final boolean rightClick;
+    @Nullable private final CauldronOutputConsolidator outputConsolidator;
+
+    private static final long transformationDelay = 20;
+    private static final double settledVelocitySquared = 1.0E-4;
 
-    private final HashMap<Item, BukkitRunnable> cauldronDrops = new HashMap<>();
+    private final int settleTimeout; // 0 if transformations get initiated after a fixed delay
+    private final ArrayList<TransformationTask> dueSettleTasks = new ArrayList<>();
+    private final Location settleLocation = new Location(null, 0, 0, 0); // reused by the settle check
+    private BukkitTask settleTask;
 
-    private CauldronItemDropListener(JavaPlugin plugin, InternalsProvider internals, Set<RedyeMaterial> enabledMaterials, int checkEmpty, int changeWater) {
+    private final HashMap<String, RedyeMaterial> enabledFamilies = new HashMap<>();
+    private final HashMap<Item, TransformationTask> cauldronDrops = new HashMap<>();
+
+    private final boolean persistent;
+    private final NamespacedKey dueKey;
+    private final NamespacedKey familyKey;
+    private final NamespacedKey throwerKey;
+
+    private CauldronItemDropListener(JavaPlugin plugin, InternalsProvider internals, PermissionCache permissionCache, @Nullable StatisticsStore statisticsStore, @Nullable TraceBuffer traceBuffer, Set<RedyeMaterial> enabledMaterials, int checkEmpty, int changeWater, boolean rightClick, int settleTimeout, @Nullable CauldronOutputConsolidator outputConsolidator) {
         this.plugin = plugin;
         this.internals = internals;
-        this.enabledMaterials = enabledMaterials;
+        this.permissionCache = permissionCache;
+        this.statisticsStore = statisticsStore;
+        this.traceBuffer = traceBuffer;
+        this.enabledMaterials = internals.createLookup(enabledMaterials);
+        this.familyMaterials = EnumSet.noneOf(Material.class);
+        this.familyMaterials.addAll(internals.createLookup(internals.getDefaultRedyeMaterials()).keySet());
+        for (RedyeMaterial redyeMaterial : enabledMaterials) {
+            undyeMaterials.put(redyeMaterial, getUndyeMaterial(redyeMaterial));
+            enabledFamilies.put(redyeMaterial.getConfigName(), redyeMaterial);
+        }
         this.checkEmpty = checkEmpty;
         this.changeWater = changeWater;
+        this.rightClick = rightClick;
+        this.settleTimeout = settleTimeout;
+        this.outputConsolidator = outputConsolidator;
+
+        this.persistent = internals.hasEntityPersistentData();
+        this.dueKey = new NamespacedKey(plugin, "bleach_due");
+        this.familyKey = new NamespacedKey(plugin, "bleach_family");
+        this.throwerKey = new NamespacedKey(plugin, "bleach_thrower");
+    }
+
+    /**
+     * Gets the config names of all families which can be bleached in cauldrons.
+     * @return the config names
+     */
+    @NotNull
+    public Set<String> getEnabledFamilies() {
+        return Collections.unmodifiableSet(enabledFamilies.keySet());
     }
 
     @Nullable
-    private RedyeMaterial getEnabledMaterialByType(String itemType) {
-        for (RedyeMaterial redyeMaterial : enabledMaterials) {
-            if (itemType.endsWith(redyeMaterial.getColorMatName())) {
-                return redyeMaterial;
-            }
-        }
-        ConsoleMessage.debug(this.getClass(), plugin, "Could not find RedyeMaterial for " + itemType);
-        return null;
+    private RedyeMaterial getEnabledMaterialByType(Material itemType) {
+        RedyeMaterial redyeMaterial = enabledMaterials.get(itemType);
+        if (redyeMaterial == null)
+            DebugLog.debug(CauldronItemDropListener.class, plugin, "Could not find RedyeMaterial for ", itemType);
+        return redyeMaterial;
     }
 
     @NotNull
-    private Material getUndyeMaterial(RedyeMaterial redyeMaterial) {
+    private static Material getUndyeMaterial(RedyeMaterial redyeMaterial) {
         if (redyeMaterial.hasUndyeMatName()) {
             return Material.valueOf(redyeMaterial.getUndyeMatName());
         } else {
@@ -102,91 +180,367 @@ public class CauldronItemDropListener implements Listener {
         }
     }
 
+    private void trace(@NotNull TraceBuffer.Decision decision, @NotNull Material material, int amount, @Nullable Block block) {
+        if (traceBuffer != null)
+            traceBuffer.record(decision, material, amount, block);
+    }
+
     @EventHandler(ignoreCancelled = true)
     public void onItemDrop(PlayerDropItemEvent e) {
-        this.initiateTransformation(e.getItemDrop(), this.getEnabledMaterialByType(e.getItemDrop().getItemStack().getType().name()));
+        RedyeMaterial redyeMaterial = this.getEnabledMaterialByType(e.getItemDrop().getItemStack().getType());
+        if (redyeMaterial == null) {
+            // only trace items of disabled families, other drops (e.g. cobblestone) would flood the trace buffer
+            if (familyMaterials.contains(e.getItemDrop().getItemStack().getType()))
+                this.trace(TraceBuffer.Decision.NO_FAMILY, e.getItemDrop().getItemStack().getType(), e.getItemDrop().getItemStack().getAmount(), null);
+            return;
+        }
+        if (!permissionCache.canBleach(e.getPlayer(), redyeMaterial.getConfigName())) {
+            DebugLog.debug(CauldronItemDropListener.class, plugin, "Did not initiate transformation because of missing bleach permission.");
+            this.trace(TraceBuffer.Decision.NO_PERMISSION, e.getItemDrop().getItemStack().getType(), e.getItemDrop().getItemStack().getAmount(), null);
+            return;
+        }
+        this.initiateTransformation(e.getItemDrop(), redyeMaterial, e.getPlayer().getUniqueId());
     }
 
-    private void initiateTransformation(Item drop, RedyeMaterial redyeMaterial) {
+    private void initiateTransformation(Item drop, RedyeMaterial redyeMaterial, UUID thrower) {
         if (redyeMaterial == null) {
-            ConsoleMessage.debug(CauldronItemDropListener.class, plugin, "Did not initiate transformation because of redyeMaterial == null.");
+            DebugLog.debug(CauldronItemDropListener.class, plugin, "Did not initiate transformation because of redyeMaterial == null.");
             return;
         }
 
-        Material undyeMaterial = this.getUndyeMaterial(redyeMaterial);
+        Material undyeMaterial = undyeMaterials.get(redyeMaterial);
+        ItemStack dropStack = drop.getItemStack();
 
-        if (drop.getItemStack().getType().equals(undyeMaterial)) {
-            ConsoleMessage.debug(CauldronItemDropListener.class, plugin, "Did not initiate transformation because of undyeMaterial == thrownMaterial.");
+        if (dropStack.getType().equals(undyeMaterial)) {
+            DebugLog.debug(CauldronItemDropListener.class, plugin, "Did not initiate transformation because of undyeMaterial == thrownMaterial.");
+            this.trace(TraceBuffer.Decision.ALREADY_UNDYED, dropStack.getType(), dropStack.getAmount(), null);
             return;
         }
 
-        int maxStackSize = redyeMaterial.getInput();
-
-        BukkitRunnable task = new BukkitRunnable() {
-            @Override
-            public void run() {
-                ConsoleMessage.debug(CauldronItemDropListener.class, plugin, "Starting transformation...");
-                Block cauldron = drop.getLocation().getBlock();
-                if (cauldron.getBlockData().getMaterial().equals(internals.getWaterCauldron())) {
-                    ConsoleMessage.debug(CauldronItemDropListener.class, plugin, "Item was thrown into a cauldron!");
-                    Levelled cauldronData = (Levelled) cauldron.getBlockData();
-
-                    int neededWater;
-                    if (checkEmpty == 2)
-                        neededWater = changeWater;
-                    else
-                        neededWater = checkEmpty;
-
-                    ItemStack undyedItems = new ItemStack(drop.getItemStack());
-                    undyedItems.setType(undyeMaterial);
-                    undyedItems.setAmount(0);
-
-                    int dyedAmount, water;
-                    for (dyedAmount = drop.getItemStack().getAmount(), water = cauldronData.getLevel(); dyedAmount > 0 && neededWater <= Math.max(0, water); water = water - changeWater) {
-                        int transformAmount = Math.min(dyedAmount, maxStackSize);
-                        dyedAmount = dyedAmount - transformAmount;
-                        undyedItems.setAmount(undyedItems.getAmount() + transformAmount);
-                    }
+        this.schedule(drop, redyeMaterial, undyeMaterial, thrower, this.getMaxDelay());
+        this.trace(TraceBuffer.Decision.SCHEDULED, dropStack.getType(), dropStack.getAmount(), null);
+    }
 
-                    if (water <= 0) {
-                        internals.emptyCauldron(cauldron);
-                    } else {
-                        cauldronData.setLevel(water);
-                        cauldron.setBlockData(cauldronData);
-                    }
+    private void schedule(Item drop, RedyeMaterial redyeMaterial, Material undyeMaterial, UUID thrower, long delay) {
+        World world = drop.getWorld();
+        TransformationTask task = new TransformationTask(drop, redyeMaterial.getInput(), undyeMaterial, thrower);
+        if (settleTimeout > 0) {
+            task.ticksLeft = delay;
+            if (settleTask == null)
+                settleTask = Bukkit.getScheduler().runTaskTimer(plugin, this::pollSettling, 1, 1);
+        } else {
+            task.scheduledTask = Bukkit.getScheduler().runTaskLater(plugin, task, delay);
+        }
+        cauldronDrops.put(drop, task);
 
-                    if (undyedItems.getAmount() > 0) {
-                        ItemStack remainingDyedItems = new ItemStack(drop.getItemStack());
-                        drop.setItemStack(undyedItems);
-                        if (dyedAmount > 0) {
-                            remainingDyedItems.setAmount(dyedAmount);
-                            Objects.requireNonNull(drop.getLocation().getWorld()).dropItem(drop.getLocation(), remainingDyedItems);
-                        }
-                    }
+        if (persistent) {
+            PersistentDataContainer container = drop.getPersistentDataContainer();
+            container.set(dueKey, PersistentDataType.LONG, world.getFullTime() + delay);
+            container.set(familyKey, PersistentDataType.STRING, redyeMaterial.getConfigName());
+            container.set(throwerKey, PersistentDataType.STRING, thrower.toString());
+        }
+    }
+
+    private void untrack(Item drop, boolean clearPersistentData) {
+        cauldronDrops.remove(drop);
+        if (clearPersistentData)
+            this.clearPersistentData(drop);
+    }
+
+    private void clearPersistentData(Item drop) {
+        if (persistent) {
+            PersistentDataContainer container = drop.getPersistentDataContainer();
+            container.remove(dueKey);
+            container.remove(familyKey);
+            container.remove(throwerKey);
+        }
+    }
+
+    /**
+     * Resumes all parked transformations of the given entities (e.g. after chunk load or restart).
+     * @param entities the entities
+     */
+    void resume(@NotNull Iterable<? extends Entity> entities) {
+        if (!persistent)
+            return;
+
+        for (Entity entity : entities) {
+            if (!(entity instanceof Item) || cauldronDrops.containsKey(entity))
+                continue;
+
+            Item drop = (Item) entity;
+            PersistentDataContainer container = drop.getPersistentDataContainer();
+            Long due = container.get(dueKey, PersistentDataType.LONG);
+            if (due == null)
+                continue;
+
+            RedyeMaterial redyeMaterial = enabledFamilies.get(container.get(familyKey, PersistentDataType.STRING));
+            String thrower = container.get(throwerKey, PersistentDataType.STRING);
+            if (redyeMaterial == null || thrower == null || redyeMaterial != enabledMaterials.get(drop.getItemStack().getType())) {
+                this.clearPersistentData(drop); // family got disabled or item changed
+                continue;
+            }
+
+            UUID throwerUUID;
+            try {
+                throwerUUID = UUID.fromString(thrower);
+            } catch (IllegalArgumentException ex) {
+                this.clearPersistentData(drop);
+                continue;
+            }
+
+            // bounded as world time may have been changed in between
+            long delay = Math.max(1, Math.min(this.getMaxDelay(), due - drop.getWorld().getFullTime()));
+            this.schedule(drop, redyeMaterial, undyeMaterials.get(redyeMaterial), throwerUUID, delay);
+            DebugLog.debug(CauldronItemDropListener.class, plugin, "Resumed transformation with delay ", delay);
+            this.trace(TraceBuffer.Decision.RESUMED, drop.getItemStack().getType(), drop.getItemStack().getAmount(), null);
+        }
+    }
+
+    /**
+     * Spawns the collected output of the current tick immediately, so that it does not get lost on disable.
+     */
+    public void flushOutput() {
+        if (outputConsolidator != null)
+            outputConsolidator.flush();
+    }
+
+    /**
+     * Resumes all parked transformations of already loaded items (e.g. spawn chunks after restart).
+     */
+    public void resumeLoaded() {
+        for (World world : Bukkit.getWorlds()) {
+            this.resume(world.getEntitiesByClass(Item.class));
+        }
+    }
+
+    /**
+     * Parks the pending transformations of the given entities because they get unloaded (wherever the items moved since they were thrown).
+     * <p>The persistent data stays on the items, so the transformations get resumed once they are loaded again.</p>
+     * @param entities the unloaded entities
+     */
+    void park(@NotNull Iterable<? extends Entity> entities) {
+        if (cauldronDrops.isEmpty())
+            return;
+
+        int parked = 0;
+        for (Entity entity : entities) {
+            if (!(entity instanceof Item))
+                continue;
+            TransformationTask task = cauldronDrops.remove(entity);
+            if (task != null) {
+                task.cancel();
+                parked++;
+            }
+        }
+        if (parked > 0)
+            DebugLog.debug(CauldronItemDropListener.class, plugin, "Parked pending transformations because of unload: ", parked);
+    }
+
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent e) {
+        Iterator<Item> iterator = cauldronDrops.keySet().iterator();
+        while (iterator.hasNext()) {
+            Item drop = iterator.next();
+            if (e.getWorld().equals(drop.getWorld())) {
+                cauldronDrops.get(drop).cancel();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Bleaches as many items as the water of the cauldron allows and lowers its water level accordingly.
+     * @param cauldron the (water) cauldron
+     * @param dyedAmount the amount of dyed items
+     * @param maxStackSize the maximum amount of items which can be bleached with one change of the water level
+     * @return the amount of bleached items
+     */
+    private int bleach(Block cauldron, int dyedAmount, int maxStackSize) {
+        Levelled cauldronData = (Levelled) cauldron.getBlockData();
+
+        int neededWater;
+        if (checkEmpty == 2)
+            neededWater = changeWater;
+        else
+            neededWater = checkEmpty;
+
+        int undyedAmount, water;
+        for (undyedAmount = 0, water = cauldronData.getLevel(); undyedAmount < dyedAmount && neededWater <= Math.max(0, water); water = water - changeWater) {
+            undyedAmount = undyedAmount + Math.min(dyedAmount - undyedAmount, maxStackSize);
+        }
+
+        if (water <= 0) {
+            internals.emptyCauldron(cauldron);
+        } else {
+            cauldronData.setLevel(water);
+            cauldron.setBlockData(cauldronData);
+        }
+        return undyedAmount;
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onCauldronInteract(PlayerInteractEvent e) {
+        // only the main hand: a cancelled main hand interaction fires the event again for the off hand, which would bleach twice with one click
+        if (!rightClick || e.getAction() != Action.RIGHT_CLICK_BLOCK || e.getHand() != EquipmentSlot.HAND)
+            return;
+
+        ItemStack item = e.getItem();
+        Block cauldron = e.getClickedBlock();
+        if (item == null || cauldron == null || !cauldron.getType().equals(internals.getWaterCauldron()))
+            return;
+
+        RedyeMaterial redyeMaterial = enabledMaterials.get(item.getType());
+        Material undyeMaterial = undyeMaterials.get(redyeMaterial);
+        if (redyeMaterial == null || item.getType().equals(undyeMaterial))
+            return;
+
+        Player p = e.getPlayer();
+        if (!permissionCache.canBleach(p, redyeMaterial.getConfigName())) {
+            this.trace(TraceBuffer.Decision.NO_PERMISSION, item.getType(), item.getAmount(), cauldron);
+            return;
+        }
+
+        int undyedAmount = this.bleach(cauldron, item.getAmount(), redyeMaterial.getInput());
+        if (undyedAmount == 0) {
+            this.trace(TraceBuffer.Decision.NOT_ENOUGH_WATER, item.getType(), item.getAmount(), cauldron);
+            return;
+        }
+        e.setCancelled(true); // prevent vanilla cauldron interactions (e.g. washing banners)
+        this.trace(TraceBuffer.Decision.BLEACHED, item.getType(), undyedAmount, cauldron);
+
+        ItemStack undyedItems = new ItemStack(item);
+        undyedItems.setType(undyeMaterial);
+        undyedItems.setAmount(undyedAmount);
+
+        int dyedAmount = item.getAmount() - undyedAmount;
+        if (dyedAmount == 0) {
+            p.getInventory().setItemInMainHand(undyedItems);
+        } else {
+            ItemStack remainingDyedItems = new ItemStack(item);
+            remainingDyedItems.setAmount(dyedAmount);
+            p.getInventory().setItemInMainHand(remainingDyedItems);
+            for (ItemStack leftover : p.getInventory().addItem(undyedItems).values()) {
+                p.getWorld().dropItem(p.getLocation(), leftover); // only if the inventory is full
+            }
+        }
+
+        if (statisticsStore != null)
+            statisticsStore.increment(p, StatisticsStore.Type.BLEACHED, undyedAmount);
+    }
+
+    private long getMaxDelay() {
+        return settleTimeout > 0 ? settleTimeout : transformationDelay;
+    }
+
+    /**
+     * Checks all tracked items (and only those) whether they came to rest inside a water cauldron or timed out.
+     */
+    private void pollSettling() {
+        if (cauldronDrops.isEmpty()) {
+            settleTask.cancel();
+            settleTask = null;
+            return;
+        }
+
+        for (TransformationTask task : cauldronDrops.values()) {
+            if (--task.ticksLeft <= 0 || !task.drop.isValid() || this.isSettledInCauldron(task.drop))
+                dueSettleTasks.add(task);
+        }
+        for (TransformationTask task : dueSettleTasks) {
+            task.run(); // removes itself from cauldronDrops
+        }
+        dueSettleTasks.clear();
+    }
+
+    private boolean isSettledInCauldron(Item drop) {
+        if (!drop.isOnGround() || drop.getVelocity().lengthSquared() > settledVelocitySquared)
+            return false;
+        return drop.getLocation(settleLocation).getBlock().getType().equals(internals.getWaterCauldron());
+    }
+
+    private class TransformationTask implements Runnable {
+
+        private final Item drop;
+        private final int maxStackSize;
+        private final Material undyeMaterial;
+        private final UUID thrower;
+
+        @Nullable private BukkitTask scheduledTask; // only in delay mode
+        private long ticksLeft; // only in settle mode
+
+        private TransformationTask(Item drop, int maxStackSize, Material undyeMaterial, UUID thrower) {
+            this.drop = drop;
+            this.maxStackSize = maxStackSize;
+            this.undyeMaterial = undyeMaterial;
+            this.thrower = thrower;
+        }
+
+        private void cancel() {
+            if (scheduledTask != null)
+                scheduledTask.cancel();
+        }
+
+        @Override
+        public void run() {
+            if (!drop.isValid()) { // picked up or despawned
+                untrack(drop, false);
+                DebugLog.debug(CauldronItemDropListener.class, plugin, "Did not start transformation because item is no longer valid.");
+                return;
+            }
+            untrack(drop, true);
+            DebugLog.debug(CauldronItemDropListener.class, plugin, "Starting transformation...");
+            Block cauldron = drop.getLocation().getBlock();
+            if (cauldron.getType().equals(internals.getWaterCauldron())) {
+                DebugLog.debug(CauldronItemDropListener.class, plugin, "Item was thrown into a cauldron!");
+                int dyedAmount = drop.getItemStack().getAmount();
+                ItemStack undyedItems = new ItemStack(drop.getItemStack());
+                undyedItems.setType(undyeMaterial);
+                undyedItems.setAmount(bleach(cauldron, dyedAmount, maxStackSize));
+                dyedAmount = dyedAmount - undyedItems.getAmount();
+
+                if (undyedItems.getAmount() == 0) {
+                    trace(TraceBuffer.Decision.NOT_ENOUGH_WATER, drop.getItemStack().getType(), dyedAmount, cauldron);
                 } else {
-                    ConsoleMessage.debug(CauldronItemDropListener.class, plugin, "Item was NOT thrown into cauldron but " + drop.getLocation().getBlock().getBlockData().getMaterial().name());
+                    trace(TraceBuffer.Decision.BLEACHED, drop.getItemStack().getType(), undyedItems.getAmount(), cauldron);
+                    ItemStack remainingDyedItems = new ItemStack(drop.getItemStack());
+                    drop.setItemStack(undyedItems);
+                    if (outputConsolidator != null) {
+                        remainingDyedItems.setAmount(dyedAmount);
+                        outputConsolidator.add(cauldron, drop, dyedAmount > 0 ? remainingDyedItems : null);
+                    } else if (dyedAmount > 0) {
+                        remainingDyedItems.setAmount(dyedAmount);
+                        Objects.requireNonNull(drop.getLocation().getWorld()).dropItem(drop.getLocation(), remainingDyedItems);
+                    }
+                    if (statisticsStore != null)
+                        statisticsStore.increment(Bukkit.getOfflinePlayer(thrower), StatisticsStore.Type.BLEACHED, undyedItems.getAmount());
                 }
+            } else {
+                DebugLog.debug(CauldronItemDropListener.class, plugin, "Item was NOT thrown into cauldron but ", cauldron.getType());
+                trace(TraceBuffer.Decision.NO_CAULDRON, drop.getItemStack().getType(), drop.getItemStack().getAmount(), cauldron);
             }
-        };
-        task.runTaskLater(plugin, 20);
-        cauldronDrops.put(drop, task);
+        }
     }
 
-    private boolean cancelTransformation(Item item) {
-        BukkitRunnable task = cauldronDrops.remove(item);
+    @Nullable
+    private TransformationTask cancelTransformation(Item item) {
+        TransformationTask task = cauldronDrops.get(item);
         if (task != null) {
             task.cancel();
-            return true;
+            this.untrack(item, true);
         }
-        return false;
+        return task;
     }
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
     public void onDropMerge(ItemMergeEvent e) {
-        boolean reschedule = this.cancelTransformation(e.getEntity());
-        if (this.cancelTransformation(e.getTarget()) || reschedule) {
-            this.initiateTransformation(e.getTarget(), this.getEnabledMaterialByType(e.getTarget().getItemStack().getType().name()));
-            ConsoleMessage.debug(this.getClass(), plugin, "Transformation was rescheduled because of itemMerge.");
+        TransformationTask sourceTask = this.cancelTransformation(e.getEntity());
+        TransformationTask targetTask = this.cancelTransformation(e.getTarget());
+        if (targetTask != null || sourceTask != null) {
+            UUID thrower = targetTask != null ? targetTask.thrower : sourceTask.thrower;
+            this.initiateTransformation(e.getTarget(), this.getEnabledMaterialByType(e.getTarget().getItemStack().getType()), thrower);
+            DebugLog.debug(CauldronItemDropListener.class, plugin, "Transformation was rescheduled because of itemMerge.");
+            this.trace(TraceBuffer.Decision.RESCHEDULED, e.getTarget().getItemStack().getType(), e.getTarget().getItemStack().getAmount(), null);
         }
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.listeners;
+
+import com.github.alexqp.redye.main.DebugLog;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Container;
+import org.bukkit.entity.Item;
+import org.bukkit.event.inventory.InventoryPickupItemEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the output of all cauldron transformations of a tick and merges it per cauldron into the fewest possible item entities
+ * (or inserts it into an adjacent container).
+ */
+class CauldronOutputConsolidator {
+
+    private static final BlockFace[] containerFaces = {BlockFace.DOWN, BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST};
+
+    private static class Output {
+        private final List<Item> drops = new ArrayList<>();
+        private final List<ItemStack> stacks = new ArrayList<>(); // stacks without entity
+    }
+
+    private final JavaPlugin plugin;
+    private final boolean useContainers;
+
+    private final HashMap<Block, Output> outputs = new HashMap<>();
+
+    CauldronOutputConsolidator(@NotNull JavaPlugin plugin, boolean useContainers) {
+        this.plugin = plugin;
+        this.useContainers = useContainers;
+    }
+
+    /**
+     * Adds the output of a transformation. The output gets consolidated at the beginning of the next tick.
+     * @param cauldron the cauldron
+     * @param drop the transformed item
+     * @param remainingItems the items which could not be transformed or null
+     */
+    void add(@NotNull Block cauldron, @NotNull Item drop, @Nullable ItemStack remainingItems) {
+        if (outputs.isEmpty())
+            Bukkit.getScheduler().runTask(plugin, this::flush);
+
+        Output output = outputs.computeIfAbsent(cauldron, k -> new Output());
+        output.drops.add(drop);
+        if (remainingItems != null)
+            output.stacks.add(remainingItems);
+    }
+
+    /**
+     * Consolidates all collected output immediately (e.g. on disable, as the scheduled flush would not run anymore).
+     */
+    void flush() {
+        for (Map.Entry<Block, Output> entry : outputs.entrySet()) {
+            this.flush(entry.getKey(), entry.getValue());
+        }
+        outputs.clear();
+    }
+
+    private void flush(@NotNull Block cauldron, @NotNull Output output) {
+        List<ItemStack> stacks = new ArrayList<>();
+        List<Item> drops = new ArrayList<>();
+        for (Item drop : output.drops) {
+            if (drop.isValid()) { // may have been picked up in the meantime
+                drops.add(drop);
+                stacks.add(drop.getItemStack());
+            }
+        }
+        stacks.addAll(output.stacks);
+
+        List<ItemStack> merged = merge(stacks);
+        int before = drops.size() + output.stacks.size();
+
+        if (useContainers && !drops.isEmpty()) {
+            Container container = this.getAdjacentContainer(cauldron);
+            if (container != null && this.canInsert(container, drops.get(0)))
+                merged = new ArrayList<>(container.getInventory().addItem(merged.toArray(new ItemStack[0])).values());
+        }
+
+        // reuse existing entities, remove surplus ones and only spawn new ones if necessary
+        Location location = drops.isEmpty() ? cauldron.getLocation().add(0.5, 0.5, 0.5) : drops.get(0).getLocation();
+        for (int i = 0; i < Math.max(drops.size(), merged.size()); i++) {
+            if (i >= merged.size())
+                drops.get(i).remove();
+            else if (i < drops.size())
+                drops.get(i).setItemStack(merged.get(i));
+            else
+                cauldron.getWorld().dropItem(location, merged.get(i));
+        }
+        DebugLog.debug(CauldronOutputConsolidator.class, plugin, "Consolidated cauldron output from ", before, " stacks to ", merged.size());
+    }
+
+    @Nullable
+    private Container getAdjacentContainer(@NotNull Block cauldron) {
+        for (BlockFace face : containerFaces) {
+            BlockState state = cauldron.getRelative(face).getState();
+            if (state instanceof Container)
+                return (Container) state;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if protection plugins allow the container to take the output, the same way a hopper picking up an item would be checked.
+     * @param container the container
+     * @param drop one of the transformed items
+     * @return true if the output may be inserted, false otherwise
+     */
+    private boolean canInsert(@NotNull Container container, @NotNull Item drop) {
+        InventoryPickupItemEvent event = new InventoryPickupItemEvent(container.getInventory(), drop);
+        Bukkit.getPluginManager().callEvent(event);
+        return !event.isCancelled();
+    }
+
+    /**
+     * Merges similar stacks up to their max stack size.
+     * @param stacks the stacks
+     * @return the merged stacks
+     */
+    @NotNull
+    static List<ItemStack> merge(@NotNull Collection<ItemStack> stacks) {
+        List<ItemStack> merged = new ArrayList<>();
+        for (ItemStack stack : stacks) {
+            int amount = stack.getAmount();
+            for (ItemStack mergedStack : merged) {
+                if (amount == 0)
+                    break;
+                if (mergedStack.getAmount() < mergedStack.getMaxStackSize() && mergedStack.isSimilar(stack)) {
+                    int add = Math.min(amount, mergedStack.getMaxStackSize() - mergedStack.getAmount());
+                    mergedStack.setAmount(mergedStack.getAmount() + add);
+                    amount = amount - add;
+                }
+            }
+            while (amount > 0) {
+                ItemStack mergedStack = stack.clone();
+                mergedStack.setAmount(Math.min(amount, stack.getMaxStackSize()));
+                merged.add(mergedStack);
+                amount = amount - mergedStack.getAmount();
+            }
+        }
+        return merged;
+    }
+}
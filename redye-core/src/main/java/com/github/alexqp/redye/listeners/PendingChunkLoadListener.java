@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import java.util.Arrays;
+
+/**
+ * Parks pending cauldron transformations on chunk unload and resumes them on chunk load (before 1.17 entities are (un)loaded together with their chunk).
+ */
+public class PendingChunkLoadListener implements Listener {
+
+    private final CauldronItemDropListener cauldronItemDropListener;
+
+    public PendingChunkLoadListener(CauldronItemDropListener cauldronItemDropListener) {
+        this.cauldronItemDropListener = cauldronItemDropListener;
+    }
+
+    @EventHandler
+    private void onChunkLoad(ChunkLoadEvent e) {
+        cauldronItemDropListener.resume(Arrays.asList(e.getChunk().getEntities()));
+    }
+
+    @EventHandler
+    private void onChunkUnload(ChunkUnloadEvent e) {
+        cauldronItemDropListener.park(Arrays.asList(e.getChunk().getEntities()));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+
+/**
+ * Parks pending cauldron transformations when the entities of a chunk get unloaded and resumes them as soon as they are loaded again (1.17 onwards).
+ */
+public class PendingEntitiesLoadListener implements Listener {
+
+    private final CauldronItemDropListener cauldronItemDropListener;
+
+    public PendingEntitiesLoadListener(CauldronItemDropListener cauldronItemDropListener) {
+        this.cauldronItemDropListener = cauldronItemDropListener;
+    }
+
+    @EventHandler
+    private void onEntitiesLoad(EntitiesLoadEvent e) {
+        cauldronItemDropListener.resume(e.getEntities());
+    }
+
+    @EventHandler
+    private void onEntitiesUnload(EntitiesUnloadEvent e) {
+        cauldronItemDropListener.park(e.getEntities());
+    }
+}
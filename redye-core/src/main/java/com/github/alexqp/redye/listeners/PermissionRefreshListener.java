@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.listeners;
+
+import com.github.alexqp.redye.main.PermissionCache;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandSendEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+public class PermissionRefreshListener implements Listener {
+
+    private final PermissionCache permissionCache;
+
+    public PermissionRefreshListener(PermissionCache permissionCache) {
+        this.permissionCache = permissionCache;
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    private void onPlayerJoin(PlayerJoinEvent e) {
+        permissionCache.refresh(e.getPlayer());
+    }
+
+    @EventHandler
+    private void onPlayerLeave(PlayerQuitEvent e) {
+        permissionCache.invalidate(e.getPlayer().getUniqueId());
+    }
+
+    // per world permissions
+    @EventHandler
+    private void onWorldChange(PlayerChangedWorldEvent e) {
+        permissionCache.refresh(e.getPlayer());
+    }
+
+    // the command tree gets resent whenever permissions changed (op, permission plugins), so it is used as permission change event.
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onCommandSend(PlayerCommandSendEvent e) {
+        permissionCache.refresh(e.getPlayer());
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.listeners;
+
+import com.github.alexqp.redye.main.DebugLog;
+import com.github.alexqp.redye.main.PermissionCache;
+import com.github.alexqp.redye.main.StatisticsStore;
+import com.github.alexqp.redye.main.TraceBuffer;
+import org.bukkit.Keyed;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.CraftItemEvent;
+import org.bukkit.event.inventory.PrepareItemCraftEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.Recipe;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+public class RedyeCraftListener implements Listener {
+
+    private final JavaPlugin plugin;
+    private final PermissionCache permissionCache;
+    @Nullable private final StatisticsStore statisticsStore;
+    @Nullable private final TraceBuffer traceBuffer;
+    private final Map<NamespacedKey, String> colorRecipeFamilies;
+    private final Map<NamespacedKey, String> undyeRecipeFamilies;
+
+    /**
+     * @param plugin the plugin
+     * @param permissionCache the permissionCache
+     * @param statisticsStore the statisticsStore or null if statistics are disabled
+     * @param traceBuffer the traceBuffer or null if tracing is disabled
+     * @param colorRecipeFamilies the family config names of all added color recipes by their keys
+     * @param undyeRecipeFamilies the family config names of all added undye recipes by their keys
+     */
+    public RedyeCraftListener(JavaPlugin plugin, PermissionCache permissionCache, @Nullable StatisticsStore statisticsStore, @Nullable TraceBuffer traceBuffer, Map<NamespacedKey, String> colorRecipeFamilies, Map<NamespacedKey, String> undyeRecipeFamilies) {
+        this.plugin = plugin;
+        this.permissionCache = permissionCache;
+        this.statisticsStore = statisticsStore;
+        this.traceBuffer = traceBuffer;
+        this.colorRecipeFamilies = colorRecipeFamilies;
+        this.undyeRecipeFamilies = undyeRecipeFamilies;
+    }
+
+    @EventHandler
+    private void onPrepareCraft(PrepareItemCraftEvent e) {
+        Recipe recipe = e.getRecipe();
+        if (!(recipe instanceof Keyed))
+            return;
+
+        HumanEntity human = e.getView().getPlayer();
+        if (!(human instanceof Player))
+            return;
+        Player p = (Player) human;
+
+        NamespacedKey key = ((Keyed) recipe).getKey();
+        String family = colorRecipeFamilies.get(key);
+        if (family != null) {
+            if (!permissionCache.canCraft(p, family)) {
+                this.deny(e, recipe);
+                DebugLog.debug(RedyeCraftListener.class, plugin, "denied color recipe ", key, " for ", p.getName());
+            }
+            return;
+        }
+
+        family = undyeRecipeFamilies.get(key);
+        if (family != null && !permissionCache.canBleach(p, family)) {
+            this.deny(e, recipe);
+            DebugLog.debug(RedyeCraftListener.class, plugin, "denied undye recipe ", key, " for ", p.getName());
+        }
+    }
+
+    private void deny(PrepareItemCraftEvent e, Recipe recipe) {
+        e.getInventory().setResult(null);
+        if (traceBuffer != null)
+            traceBuffer.record(TraceBuffer.Decision.CRAFT_DENIED, recipe.getResult().getType(), recipe.getResult().getAmount(), null);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    private void onCraft(CraftItemEvent e) {
+        if (statisticsStore == null)
+            return;
+
+        Recipe recipe = e.getRecipe();
+        if (!(recipe instanceof Keyed) || !(e.getWhoClicked() instanceof Player))
+            return;
+
+        StatisticsStore.Type type;
+        NamespacedKey key = ((Keyed) recipe).getKey();
+        if (colorRecipeFamilies.containsKey(key))
+            type = StatisticsStore.Type.REDYED;
+        else if (undyeRecipeFamilies.containsKey(key))
+            type = StatisticsStore.Type.BLEACHED;
+        else
+            return;
+
+        ItemStack result = e.getInventory().getResult();
+        if (result == null)
+            return;
+        Player p = (Player) e.getWhoClicked();
+
+        int crafts;
+        if (e.isShiftClick()) {
+            // as often as the smallest ingredient stack allows and the results fit into the inventory
+            crafts = Math.min(this.getIngredientSets(e.getInventory().getMatrix()), this.getFreeSpace(p, result) / result.getAmount());
+        } else if (e.getClick() == ClickType.NUMBER_KEY) {
+            // the result can only be moved into an empty hotbar slot
+            ItemStack hotbarItem = p.getInventory().getItem(e.getHotbarButton());
+            crafts = hotbarItem == null || hotbarItem.getType() == Material.AIR ? 1 : 0;
+        } else {
+            // the result can only be picked up if it fits onto the cursor
+            ItemStack cursor = e.getCursor();
+            crafts = cursor == null || cursor.getType() == Material.AIR
+                    || (cursor.isSimilar(result) && cursor.getAmount() + result.getAmount() <= cursor.getMaxStackSize()) ? 1 : 0;
+        }
+        if (crafts > 0)
+            statisticsStore.increment(p, type, result.getAmount() * crafts);
+    }
+
+    private int getIngredientSets(ItemStack[] matrix) {
+        int sets = Integer.MAX_VALUE;
+        for (ItemStack ingredient : matrix) {
+            if (ingredient != null && ingredient.getType() != Material.AIR)
+                sets = Math.min(sets, ingredient.getAmount());
+        }
+        return sets == Integer.MAX_VALUE ? 0 : sets;
+    }
+
+    private int getFreeSpace(Player p, ItemStack item) {
+        int space = 0;
+        for (ItemStack content : p.getInventory().getStorageContents()) {
+            if (content == null || content.getType() == Material.AIR)
+                space += item.getMaxStackSize();
+            else if (content.isSimilar(item))
+                space += Math.max(0, item.getMaxStackSize() - content.getAmount());
+        }
+        return space;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.listeners;
+
+import com.github.alexqp.redye.main.VanillaRecipePruner;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.PrepareItemCraftEvent;
+import org.bukkit.event.server.ServerLoadEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Prunes the vanilla redye recipes again after they got restored by a reload.
+ * <p>Spigot has no event for data pack reloads (/minecraft:reload), so such a reload gets noticed as soon as a restored recipe gets prepared.</p>
+ */
+public class VanillaRecipeReloadListener implements Listener {
+
+    private final JavaPlugin plugin;
+    private final VanillaRecipePruner vanillaRecipePruner;
+    private boolean pruneScheduled = false;
+
+    public VanillaRecipeReloadListener(JavaPlugin plugin, VanillaRecipePruner vanillaRecipePruner) {
+        this.plugin = plugin;
+        this.vanillaRecipePruner = vanillaRecipePruner;
+    }
+
+    @EventHandler
+    private void onServerLoad(ServerLoadEvent e) {
+        if (e.getType() == ServerLoadEvent.LoadType.RELOAD)
+            vanillaRecipePruner.pruneAgain();
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    private void onPrepareCraft(PrepareItemCraftEvent e) {
+        if (!vanillaRecipePruner.isPruned(e.getRecipe()))
+            return;
+
+        e.getInventory().setResult(null);
+        if (!pruneScheduled) { // not while the recipe is in use
+            pruneScheduled = true;
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                pruneScheduled = false;
+                vanillaRecipePruner.pruneAgain();
+            });
+        }
+    }
+}
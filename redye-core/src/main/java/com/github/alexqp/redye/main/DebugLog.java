@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.main;
+
+import com.github.alexqp.commons.messages.ConsoleMessage;
+import com.github.alexqp.commons.messages.Debugable;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Supplier;
+
+/**
+ * Level-guarded facade for {@link ConsoleMessage#debug(Class, JavaPlugin, String)}.
+ * <p>Messages only get built if debugging is enabled, so hot paths do not allocate anything otherwise.
+ * Pass a message prefix and its argument separately or use a non-capturing supplier.</p>
+ */
+public final class DebugLog {
+
+    private DebugLog() {}
+
+    public static boolean isEnabled(@NotNull JavaPlugin plugin) {
+        return plugin instanceof Debugable && ((Debugable) plugin).getDebug();
+    }
+
+    public static void debug(@NotNull Class<?> clazz, @NotNull JavaPlugin plugin, @NotNull String message) {
+        if (isEnabled(plugin))
+            ConsoleMessage.debug(clazz, plugin, message);
+    }
+
+    public static void debug(@NotNull Class<?> clazz, @NotNull JavaPlugin plugin, @NotNull String prefix, @Nullable Object arg) {
+        if (isEnabled(plugin))
+            ConsoleMessage.debug(clazz, plugin, prefix + arg);
+    }
+
+    // primitive overloads, so that disabled messages do not autobox their arguments
+    public static void debug(@NotNull Class<?> clazz, @NotNull JavaPlugin plugin, @NotNull String prefix, int arg) {
+        if (isEnabled(plugin))
+            ConsoleMessage.debug(clazz, plugin, prefix + arg);
+    }
+
+    public static void debug(@NotNull Class<?> clazz, @NotNull JavaPlugin plugin, @NotNull String prefix, long arg) {
+        if (isEnabled(plugin))
+            ConsoleMessage.debug(clazz, plugin, prefix + arg);
+    }
+
+    public static void debug(@NotNull Class<?> clazz, @NotNull JavaPlugin plugin, @NotNull String prefix, int arg1, @NotNull String infix, int arg2) {
+        if (isEnabled(plugin))
+            ConsoleMessage.debug(clazz, plugin, prefix + arg1 + infix + arg2);
+    }
+
+    public static void debug(@NotNull Class<?> clazz, @NotNull JavaPlugin plugin, @NotNull String prefix, @Nullable Object arg1, @NotNull String infix, @Nullable Object arg2) {
+        if (isEnabled(plugin))
+            ConsoleMessage.debug(clazz, plugin, prefix + arg1 + infix + arg2);
+    }
+
+    public static void debug(@NotNull Class<?> clazz, @NotNull JavaPlugin plugin, @NotNull Supplier<String> message) {
+        if (isEnabled(plugin))
+            ConsoleMessage.debug(clazz, plugin, message.get());
+    }
+}
@@ -19,7 +19,6 @@
 package com.github.alexqp.redye.main;
 
 import com.github.alexqp.commons.messages.ConsoleMessage;
-import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
 import org.bukkit.block.Block;
@@ -36,9 +35,15 @@ public class InternalsProvider {
     protected Map<String, Material> colorMap;
     protected HashSet<RedyeMaterial> redyeMats;
 
+    // compiled lookup table: colorMatName -> all existing colored materials
+    private final HashMap<String, List<Material>> colorMaterials = new HashMap<>();
+
     protected InternalsProvider() {
         this.createColorMap();
         this.createRedyeMaterials();
+        for (RedyeMaterial redyeMat : redyeMats) {
+            this.compile(redyeMat);
+        }
     }
 
     // this should get overwritten by version implementation
@@ -95,25 +100,100 @@ public class InternalsProvider {
         return materials;
     }
 
-    private @NotNull List<Material> getColorMaterials(@NotNull String matName) {
+    /**
+     * Adds a (user-defined) redye material and compiles it into the lookup tables.
+     * <p>Note: The redye material needs to be validated beforehand.</p>
+     * @param redyeMat the redye material
+     * @return false if a redye material with the same config name or color mat name already exists, true otherwise
+     */
+    boolean addRedyeMaterial(@NotNull RedyeMaterial redyeMat) {
+        // recipe keys and lookup tables are based on the colored materials, so every color mat name may only belong to one redye material
+        if (colorMaterials.containsKey(redyeMat.getColorMatName()))
+            return false;
+        for (RedyeMaterial existingMat : redyeMats) {
+            if (existingMat.getConfigName().equals(redyeMat.getConfigName()))
+                return false;
+        }
+        redyeMats.add(redyeMat.copy());
+        this.compile(redyeMat);
+        return true;
+    }
+
+    /**
+     * Removes all (user-defined) redye materials and their lookup tables, so that they can be added again on the next enable.
+     */
+    void removeCustomRedyeMaterials() {
+        Iterator<RedyeMaterial> iterator = redyeMats.iterator();
+        while (iterator.hasNext()) {
+            RedyeMaterial redyeMat = iterator.next();
+            if (redyeMat.isCustom()) {
+                colorMaterials.remove(redyeMat.getColorMatName()); // color mat names are unique per redye material
+                iterator.remove();
+            }
+        }
+    }
+
+    private void compile(@NotNull RedyeMaterial redyeMat) {
+        String matName = redyeMat.getColorMatName();
+        if (colorMaterials.containsKey(matName))
+            return;
+
         List<Material> materials = new ArrayList<>();
-        for (String colorPrefix : this.getColorMap().keySet()) {
+        for (String colorPrefix : colorMap.keySet()) {
             Material mat = Material.matchMaterial(colorPrefix + matName);
             if (mat != null) {
                 materials.add(mat);
             }
         }
-        return materials;
+        colorMaterials.put(matName, Collections.unmodifiableList(materials));
     }
 
     /**
-     * Adds for every color a recipe to craft color_matName (result) out of any !other! color_matName (ingredient) + colorDye
+     * Checks if any colored material exists for the given color suffix (e.g. STAINED_GLASS).
+     * @param matName the color suffix
+     * @return true if at least one colored material exists, false otherwise
+     */
+    boolean hasColorMaterials(@NotNull String matName) {
+        for (String colorPrefix : colorMap.keySet()) {
+            if (Material.matchMaterial(colorPrefix + matName) != null)
+                return true;
+        }
+        return false;
+    }
+
+    private @NotNull List<Material> getColorMaterials(@NotNull String matName) {
+        List<Material> materials = colorMaterials.get(matName);
+        return materials != null ? new ArrayList<>(materials) : new ArrayList<>();
+    }
+
+    /**
+     * Creates a lookup table which maps every colored material to its redye material.
+     * @param redyeMats the redye materials (e.g. all enabled ones)
+     * @return the lookup table
+     */
+    @NotNull
+    public EnumMap<Material, RedyeMaterial> createLookup(@NotNull Collection<RedyeMaterial> redyeMats) {
+        EnumMap<Material, RedyeMaterial> lookup = new EnumMap<>(Material.class);
+        for (RedyeMaterial redyeMat : redyeMats) {
+            List<Material> materials = colorMaterials.get(redyeMat.getColorMatName());
+            if (materials == null)
+                continue;
+            for (Material mat : materials) {
+                lookup.put(mat, redyeMat);
+            }
+        }
+        return lookup;
+    }
+
+    /**
+     * Creates for every color a recipe to craft color_matName (result) out of any !other! color_matName (ingredient) + colorDye
+     * <p>Note: The recipes are not registered.</p>
      * @param plugin the plugin
      * @param redyeMat the redyeMat
-     * @return a set of added NamespacedKeys
+     * @return the created recipes
      */
-    HashSet<NamespacedKey> addColorRecipes(JavaPlugin plugin, RedyeMaterial redyeMat) {
-        HashSet<NamespacedKey> keys = new HashSet<>();
+    List<ShapelessRecipe> createColorRecipes(JavaPlugin plugin, RedyeMaterial redyeMat) {
+        List<ShapelessRecipe> recipes = new ArrayList<>();
 
         String matName = redyeMat.getColorMatName();
         int input = redyeMat.getInput();
@@ -145,26 +225,24 @@ public class InternalsProvider {
             }
             recipe.setGroup(groupName);
 
-            Bukkit.addRecipe(recipe);
-            keys.add(key);
+            recipes.add(recipe);
         }
-        return keys;
+        return recipes;
     }
 
 
     /**
-     * Add a recipe to craft resultMat out of any color_matName (ingredient) + neutralDyeMat
+     * Creates a recipe to craft resultMat out of any color_matName (ingredient) + neutralDyeMat
+     * <p>Note: The recipe is not registered.</p>
      * @param plugin the plugin
      * @param matName the ingredients mat name (gets colored)
      * @param neutralDyeMat the "neutral-dye" (i. e. ICE)
      * @param resultMat the result material
      * @param input the amount of ingredients / result
      * @param groupName the recipe group name (sorts in recipe book)
-     * @return the namespacedKey of the added recipe.
+     * @return the created recipe
      */
-    HashSet<NamespacedKey> addUndyeRecipes(JavaPlugin plugin, String matName, Material neutralDyeMat, Material resultMat, int input, String groupName) {
-        HashSet<NamespacedKey> keys = new HashSet<>();
-
+    ShapelessRecipe createUndyeRecipe(JavaPlugin plugin, String matName, Material neutralDyeMat, Material resultMat, int input, String groupName) {
         NamespacedKey key = new NamespacedKey(plugin, "NEUTRAL_" + resultMat.name());
         ItemStack result = new ItemStack(resultMat, input);
 
@@ -174,10 +252,77 @@ public class InternalsProvider {
             recipe.addIngredient(new RecipeChoice.MaterialChoice(this.getColorMaterials(matName)));
         }
         recipe.setGroup(groupName);
+        return recipe;
+    }
+
+    /**
+     * Gets the config names of all families for which vanilla offers redye recipes (i.e. any color + dye).
+     * @return the config names
+     */
+    // this should get overwritten by version implementation
+    @NotNull
+    public Set<String> getVanillaRedyeFamilies() {
+        return new HashSet<>(Arrays.asList("wool", "carpet", "bed"));
+    }
+
+    /**
+     * Checks if this version loads the data pack written by {@link RecipeDatapack} (layout, ingredient and result format).
+     * <p>Note: The latest implementation is also used for untested versions. Recipes which were not loaded from the data pack get registered by the plugin (see {@link RecipeDatapack#registerMissing()}).</p>
+     * @return true if the recipe data pack is supported, false otherwise
+     */
+    // this should get overwritten by version implementation
+    public boolean supportsRecipeDatapack() {
+        return true;
+    }
 
-        Bukkit.addRecipe(recipe);
-        keys.add(key);
-        return keys;
+    /**
+     * Gets the pack_format of data packs for this version (see {@link RecipeDatapack}).
+     * @return the pack format
+     */
+    // this should get overwritten by version implementation
+    public int getDatapackFormat() {
+        return 41;
+    }
+
+    // this should get overwritten by version implementation
+    @NotNull
+    public String getDatapackRecipeFolder() {
+        return "recipes";
+    }
+
+    // this should get overwritten by version implementation
+    @NotNull
+    public String getDatapackItemTagFolder() {
+        return "tags/items";
+    }
+
+    /**
+     * Gets the name of the item field of recipe results (renamed from item to id in 1.20.5).
+     * @return the field name
+     */
+    // this should get overwritten by version implementation
+    @NotNull
+    public String getDatapackResultItemField() {
+        return "id";
+    }
+
+    /**
+     * Checks if recipes can be removed by key (Bukkit#removeRecipe was added in 1.15).
+     * @return true if recipes can be removed, false otherwise
+     */
+    // this should get overwritten by version implementation
+    public boolean canRemoveRecipes() {
+        return true;
+    }
+
+    // this should get overwritten by version implementation
+    public boolean hasEntityPersistentData() {
+        return true;
+    }
+
+    // this should get overwritten by version implementation
+    public boolean hasEntitiesLoadEvent() {
+        return true;
     }
 
     // this should get overwritten by version implementation
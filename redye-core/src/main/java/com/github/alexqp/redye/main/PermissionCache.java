@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.main;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionDefault;
+import org.bukkit.plugin.PluginManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Caches the per-family permissions (redye.craft.&lt;family&gt;, redye.bleach.&lt;family&gt;) of online players in a bitset.
+ * <p>Permissions get resolved on join, on world change and whenever the command tree gets resent (op changes and permission plugins which resend it like LuckPerms),
+ * so that crafting and cauldron checks never query the permission backend.
+ * Changes of other permission plugins get picked up by the periodic refresh (permissions.refresh_interval) or by calling {@link #refresh(Player)}.</p>
+ */
+public class PermissionCache {
+
+    private static final String craftPrefix = "redye.craft.";
+    private static final String bleachPrefix = "redye.bleach.";
+
+    private final HashMap<String, Integer> familyIndices = new HashMap<>();
+    private final String[] craftPermissions;
+    private final String[] bleachPermissions;
+
+    private final HashMap<UUID, BitSet> playerBits = new HashMap<>();
+
+    public PermissionCache(@NotNull Collection<RedyeMaterial> families) {
+        List<String> familyNames = new ArrayList<>();
+        for (RedyeMaterial family : families) {
+            familyNames.add(family.getConfigName());
+        }
+        Collections.sort(familyNames);
+
+        craftPermissions = new String[familyNames.size()];
+        bleachPermissions = new String[familyNames.size()];
+        for (int i = 0; i < familyNames.size(); i++) {
+            familyIndices.put(familyNames.get(i), i);
+            craftPermissions[i] = craftPrefix + familyNames.get(i);
+            bleachPermissions[i] = bleachPrefix + familyNames.get(i);
+        }
+    }
+
+    /**
+     * Registers all family permissions (default: true) including the wildcard permissions redye.craft.* and redye.bleach.*
+     */
+    void registerPermissions() {
+        PluginManager pluginManager = Bukkit.getPluginManager();
+        this.registerPermissions(pluginManager, craftPrefix, craftPermissions);
+        this.registerPermissions(pluginManager, bleachPrefix, bleachPermissions);
+    }
+
+    private void registerPermissions(@NotNull PluginManager pluginManager, @NotNull String prefix, @NotNull String[] permissions) {
+        Map<String, Boolean> children = new HashMap<>();
+        for (String permission : permissions) {
+            children.put(permission, true);
+            if (pluginManager.getPermission(permission) == null) {
+                pluginManager.addPermission(new Permission(permission, PermissionDefault.TRUE));
+            }
+        }
+        if (pluginManager.getPermission(prefix + "*") == null) {
+            pluginManager.addPermission(new Permission(prefix + "*", PermissionDefault.TRUE, children));
+        }
+    }
+
+    /**
+     * Resolves all family permissions of a player.
+     * @param player the player
+     */
+    public void refresh(@NotNull Player player) {
+        playerBits.put(player.getUniqueId(), this.resolve(player));
+    }
+
+    /**
+     * Resolves all family permissions of all online players.
+     */
+    public void refreshAll() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            this.refresh(player);
+        }
+    }
+
+    public void invalidate(@NotNull UUID uuid) {
+        playerBits.remove(uuid);
+    }
+
+    @NotNull
+    private BitSet resolve(@NotNull Player player) {
+        BitSet bits = new BitSet(craftPermissions.length * 2);
+        for (int i = 0; i < craftPermissions.length; i++) {
+            bits.set(i * 2, player.hasPermission(craftPermissions[i]));
+            bits.set(i * 2 + 1, player.hasPermission(bleachPermissions[i]));
+        }
+        return bits;
+    }
+
+    public boolean canCraft(@NotNull Player player, @NotNull String family) {
+        return this.test(player, family, 0);
+    }
+
+    public boolean canBleach(@NotNull Player player, @NotNull String family) {
+        return this.test(player, family, 1);
+    }
+
+    private boolean test(@NotNull Player player, @NotNull String family, int offset) {
+        Integer index = familyIndices.get(family);
+        if (index == null)
+            return true;
+
+        BitSet bits = playerBits.get(player.getUniqueId());
+        if (bits == null) { // should only happen if the player joined before the cache got created
+            bits = this.resolve(player);
+            playerBits.put(player.getUniqueId(), bits);
+        }
+        return bits.get(index * 2 + offset);
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.main;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.github.alexqp.commons.config.ConsoleErrorType;
+import com.github.alexqp.commons.messages.ConsoleMessage;
+import org.bukkit.Bukkit;
+import org.bukkit.Keyed;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.inventory.Recipe;
+import org.bukkit.inventory.RecipeChoice;
+import org.bukkit.inventory.ShapelessRecipe;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Collects the recipes of this plugin and writes them as a vanilla data pack (one recipe file per recipe and one item tag per ingredient set),
+ * so that the server can load them natively on startup instead of the plugin registering them on every enable.
+ */
+public class RecipeDatapack {
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private static final String exportFolderName = "datapack";
+    private static final String markerFileName = ".generated";
+
+    private final JavaPlugin plugin;
+    private final InternalsProvider internals;
+    private final String namespace;
+
+    private final List<ShapelessRecipe> recipes = new ArrayList<>();
+    private final HashMap<NamespacedKey, String> recipeTags = new HashMap<>();
+    private final TreeMap<String, List<Material>> tags = new TreeMap<>();
+
+    RecipeDatapack(@NotNull JavaPlugin plugin, @NotNull InternalsProvider internals) {
+        this.plugin = plugin;
+        this.internals = internals;
+        this.namespace = plugin.getName().toLowerCase(Locale.ROOT); // same as the namespace of the recipe keys
+    }
+
+    /**
+     * Adds a recipe. Ingredients with more than one material get written as the item tag tagName.
+     * @param recipe the recipe
+     * @param tagName the tag name of the recipe's ingredient set
+     */
+    void add(@NotNull ShapelessRecipe recipe, @NotNull String tagName) {
+        recipes.add(recipe);
+        for (RecipeChoice choice : recipe.getChoiceList()) {
+            if (choice instanceof RecipeChoice.MaterialChoice && ((RecipeChoice.MaterialChoice) choice).getChoices().size() > 1) {
+                tags.put(tagName, ((RecipeChoice.MaterialChoice) choice).getChoices());
+                recipeTags.put(recipe.getKey(), tagName);
+            }
+        }
+    }
+
+    /**
+     * Checks if the server version loads the data pack (see {@link InternalsProvider#supportsRecipeDatapack()}).
+     * @return true if the data pack is supported, false otherwise
+     */
+    public boolean isSupported() {
+        return internals.supportsRecipeDatapack();
+    }
+
+    @NotNull
+    private File getInstallFolder() {
+        File worldFolder = Bukkit.getWorlds().get(0).getWorldFolder();
+        return new File(worldFolder, "datapacks" + File.separator + namespace);
+    }
+
+    /**
+     * Writes the data pack into the datapacks folder of the main world (blocking).
+     * <p>Note: Only call if the data pack is supported.</p>
+     * @return true if any file was changed, false if the installed data pack was already up-to-date
+     * @throws IOException if a file could not be written
+     */
+    boolean install() throws IOException {
+        File packFolder = this.getInstallFolder();
+        String[] content = packFolder.list();
+        if (content != null && content.length > 0 && !this.isGenerated(packFolder.toPath()))
+            throw new IOException(packFolder + " contains a data pack which was not generated by " + plugin.getName());
+        return this.write(packFolder);
+    }
+
+    /**
+     * Deletes the data pack from the datapacks folder of the main world (blocking).
+     * <p>Note: Folders without the marker file of this plugin (e.g. a data pack of the server owner with the same name) are left untouched.</p>
+     * @return true if a data pack was installed, false otherwise
+     * @throws IOException if a file could not be deleted
+     */
+    boolean uninstall() throws IOException {
+        Path packPath = this.getInstallFolder().toPath();
+        if (!Files.isDirectory(packPath))
+            return false;
+        if (!this.isGenerated(packPath)) {
+            ConsoleMessage.send(ConsoleErrorType.WARN, plugin, packPath + " was not generated by " + plugin.getName() + " and did not get removed.");
+            return false;
+        }
+
+        List<Path> paths;
+        try (Stream<Path> stream = Files.walk(packPath)) {
+            paths = stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList()); // files before their folders
+        }
+        for (Path path : paths) {
+            Files.delete(path);
+        }
+        return true;
+    }
+
+    private boolean isGenerated(@NotNull Path packPath) throws IOException {
+        Path markerPath = packPath.resolve(markerFileName);
+        return Files.isRegularFile(markerPath) && new String(Files.readAllBytes(markerPath), StandardCharsets.UTF_8).equals(plugin.getName());
+    }
+
+    /**
+     * Registers all recipes by the plugin.
+     * @param replaceLoaded whether recipes of this namespace may already have been loaded from an (outdated) installed data pack and need to be replaced
+     */
+    void register(boolean replaceLoaded) {
+        if (replaceLoaded && internals.canRemoveRecipes()) {
+            List<NamespacedKey> loadedKeys = new ArrayList<>();
+            Iterator<Recipe> iterator = Bukkit.recipeIterator();
+            while (iterator.hasNext()) {
+                Recipe recipe = iterator.next();
+                if (recipe instanceof Keyed && ((Keyed) recipe).getKey().getNamespace().equals(namespace))
+                    loadedKeys.add(((Keyed) recipe).getKey());
+            }
+            for (NamespacedKey key : loadedKeys) {
+                Bukkit.removeRecipe(key);
+            }
+            DebugLog.debug(RecipeDatapack.class, plugin, "removed recipes loaded from the data pack: ", loadedKeys);
+        }
+
+        int skipped = 0;
+        for (ShapelessRecipe recipe : recipes) {
+            try {
+                Bukkit.addRecipe(recipe);
+            } catch (IllegalStateException e) { // duplicate recipe which was loaded from the data pack and could not be removed
+                skipped++;
+            }
+        }
+        if (skipped > 0)
+            ConsoleMessage.send(ConsoleErrorType.WARN, plugin, skipped + " recipes were already loaded from a data pack and could not be replaced. Changes to them apply after a restart.");
+    }
+
+    /**
+     * Registers the recipes which were not loaded from the installed data pack, e.g. because it is disabled or its format is not supported by an untested version.
+     * @return the amount of registered recipes
+     */
+    int registerMissing() {
+        int registered = 0;
+        for (ShapelessRecipe recipe : recipes) {
+            if (Bukkit.getRecipe(recipe.getKey()) == null && Bukkit.addRecipe(recipe))
+                registered++;
+        }
+        return registered;
+    }
+
+    /**
+     * Writes the data pack into the plugin's folder (blocking), e.g. to copy it to other servers.
+     * @return the folder of the data pack
+     * @throws IOException if a file could not be written
+     */
+    @NotNull
+    public File export() throws IOException {
+        File packFolder = new File(plugin.getDataFolder(), exportFolderName + File.separator + namespace);
+        this.write(packFolder);
+        return packFolder;
+    }
+
+    private boolean write(@NotNull File packFolder) throws IOException {
+        Map<String, String> files = this.createFiles();
+        boolean changed = false;
+
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+            Path path = packFolder.toPath().resolve(entry.getKey());
+            byte[] content = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            if (Files.exists(path) && Arrays.equals(Files.readAllBytes(path), content))
+                continue;
+            Files.createDirectories(path.getParent());
+            Files.write(path, content);
+            changed = true;
+        }
+
+        // remove recipes and tags of disabled families
+        Path dataPath = packFolder.toPath().resolve("data").resolve(namespace);
+        if (Files.isDirectory(dataPath)) {
+            List<Path> paths;
+            try (Stream<Path> stream = Files.walk(dataPath)) {
+                paths = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+            for (Path path : paths) {
+                String relativePath = packFolder.toPath().relativize(path).toString().replace(File.separatorChar, '/');
+                if (!files.containsKey(relativePath)) {
+                    Files.delete(path);
+                    changed = true;
+                }
+            }
+        }
+
+        DebugLog.debug(RecipeDatapack.class, plugin, "wrote data pack to ", packFolder, ", changed: ", changed);
+        return changed;
+    }
+
+    @NotNull
+    private Map<String, String> createFiles() {
+        Map<String, String> files = new HashMap<>();
+
+        JsonObject pack = new JsonObject();
+        pack.addProperty("pack_format", internals.getDatapackFormat());
+        pack.addProperty("description", plugin.getName() + " recipes (generated, changes get overwritten)");
+        JsonObject mcmeta = new JsonObject();
+        mcmeta.add("pack", pack);
+        files.put("pack.mcmeta", gson.toJson(mcmeta));
+        files.put(markerFileName, plugin.getName()); // uninstall only deletes folders with this marker
+
+        for (ShapelessRecipe recipe : recipes) {
+            files.put("data/" + namespace + "/" + internals.getDatapackRecipeFolder() + "/" + recipe.getKey().getKey() + ".json", gson.toJson(this.toJson(recipe)));
+        }
+
+        for (Map.Entry<String, List<Material>> entry : tags.entrySet()) {
+            JsonArray values = new JsonArray();
+            for (Material material : entry.getValue()) {
+                values.add(material.getKey().toString());
+            }
+            JsonObject tag = new JsonObject();
+            tag.addProperty("replace", false);
+            tag.add("values", values);
+            files.put("data/" + namespace + "/" + internals.getDatapackItemTagFolder() + "/" + entry.getKey() + ".json", gson.toJson(tag));
+        }
+        return files;
+    }
+
+    @NotNull
+    private JsonObject toJson(@NotNull ShapelessRecipe recipe) {
+        JsonObject json = new JsonObject();
+        json.addProperty("type", "minecraft:crafting_shapeless");
+        if (!recipe.getGroup().isEmpty())
+            json.addProperty("group", recipe.getGroup());
+
+        JsonArray ingredients = new JsonArray();
+        for (RecipeChoice choice : recipe.getChoiceList()) {
+            if (!(choice instanceof RecipeChoice.MaterialChoice))
+                continue;
+            List<Material> materials = ((RecipeChoice.MaterialChoice) choice).getChoices();
+            JsonObject ingredient = new JsonObject();
+            if (materials.size() > 1)
+                ingredient.addProperty("tag", namespace + ":" + recipeTags.get(recipe.getKey()));
+            else
+                ingredient.addProperty("item", materials.get(0).getKey().toString());
+            ingredients.add(ingredient);
+        }
+        json.add("ingredients", ingredients);
+
+        JsonObject result = new JsonObject();
+        result.addProperty(internals.getDatapackResultItemField(), recipe.getResult().getType().getKey().toString());
+        result.addProperty("count", recipe.getResult().getAmount());
+        json.add("result", result);
+        return json;
+    }
+}
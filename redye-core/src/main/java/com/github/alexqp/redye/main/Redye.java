@@ -20,7 +20,14 @@ package com.github.alexqp.redye.main;
 
 import com.github.alexqp.commons.bstats.bukkit.Metrics;
 import com.github.alexqp.commons.messages.ConsoleMessage;
+import com.github.alexqp.redye.api.RedyeService;
+import com.github.alexqp.redye.commands.RedyeCommand;
 import com.github.alexqp.redye.listeners.CauldronItemDropListener;
+import com.github.alexqp.redye.listeners.PendingChunkLoadListener;
+import com.github.alexqp.redye.listeners.PendingEntitiesLoadListener;
+import com.github.alexqp.redye.listeners.PermissionRefreshListener;
+import com.github.alexqp.redye.listeners.RedyeCraftListener;
+import com.github.alexqp.redye.listeners.VanillaRecipeReloadListener;
 import com.google.common.collect.Range;
 import com.github.alexqp.commons.config.ConfigChecker;
 import com.github.alexqp.commons.config.ConsoleErrorType;
@@ -30,25 +37,32 @@ import com.jeff_media.updatechecker.UpdateChecker;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
+import org.bukkit.command.PluginCommand;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ShapelessRecipe;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 import com.github.alexqp.redye.listeners.RecipeDiscoverConnectionListener;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Level;
 
 @SuppressWarnings("unused")
 public class Redye extends JavaPlugin implements Debugable {
 
-    // TODO remove VANILLA wool, carpet and bed recipes if disabled in config (1.20 onwards). Remove note in config then.
+    private boolean debug = false;
 
     @Override
     public boolean getDebug() {
-        return false;
+        return debug;
     }
 
     private static final String defaultInternalsVersion = "Internals_v1_20_6";
@@ -84,6 +98,16 @@ public class Redye extends JavaPlugin implements Debugable {
     private final HashSet<RedyeMaterial> redyeMats = internals.getDefaultRedyeMaterials();
     private final String[] recipeBookSectionConfigNames = {"recipe_book_options",
             "add_recipes_on_login", "remove_recipes_on_logout", "group_recipes_with_vanilla"};
+
+    private final HashMap<NamespacedKey, String> colorRecipeFamilies = new HashMap<>();
+    private final HashMap<NamespacedKey, String> undyeRecipeFamilies = new HashMap<>();
+    private PermissionCache permissionCache;
+    private StatisticsStore statisticsStore;
+    private TraceBuffer traceBuffer;
+    private VanillaRecipePruner vanillaRecipePruner;
+    private CauldronItemDropListener cauldronItemDropListener;
+    private final RecipeDatapack recipeDatapack = new RecipeDatapack(this, internals);
+
     @Override
     public void onEnable() {
         new Metrics(this, 3023);
@@ -93,6 +117,40 @@ public class Redye extends JavaPlugin implements Debugable {
 
         ConfigChecker configChecker = new ConfigChecker(this);
 
+        // ------------------------------------------------------------------
+        // DEBUG
+        // ------------------------------------------------------------------
+
+        this.checkDebug(configChecker);
+
+        // ------------------------------------------------------------------
+        // CUSTOM FAMILIES
+        // ------------------------------------------------------------------
+
+        this.loadCustomFamilies(configChecker);
+
+        // ------------------------------------------------------------------
+        // PERMISSIONS
+        // ------------------------------------------------------------------
+
+        permissionCache = new PermissionCache(redyeMats);
+        permissionCache.registerPermissions();
+        permissionCache.refreshAll();
+        Bukkit.getPluginManager().registerEvents(new PermissionRefreshListener(permissionCache), this);
+        this.checkPermissionRefresh(configChecker);
+
+        // ------------------------------------------------------------------
+        // STATISTICS
+        // ------------------------------------------------------------------
+
+        this.checkStatistics(configChecker);
+        PluginCommand command = this.getCommand("redye");
+        if (command != null) {
+            RedyeCommand redyeCommand = new RedyeCommand(statisticsStore, traceBuffer, recipeDatapack);
+            command.setExecutor(redyeCommand);
+            command.setTabCompleter(redyeCommand);
+        }
+
         // ------------------------------------------------------------------
         // RECIPE BOOK OPTIONS
         // ------------------------------------------------------------------
@@ -111,28 +169,190 @@ public class Redye extends JavaPlugin implements Debugable {
         // ------------------------------------------------------------------
 
         HashSet<HashSet<NamespacedKey>> allKeys = new HashSet<>(this.checkColorRecipes(configChecker, recipeGroupVanilla));
+        this.checkVanillaRecipes(configChecker);
 
         // ------------------------------------------------------------------
         // UNDYE RECIPES / CAULDRON
         // ------------------------------------------------------------------
 
+        HashSet<String> bleachFamilies = new HashSet<>();
         ConfigurationSection undyeRootSection = configChecker.checkConfigSection(this.getConfig(), "bleaching", ConsoleErrorType.ERROR);
         if (undyeRootSection != null) {
             allKeys.addAll(this.checkUndyeRecipes(configChecker, undyeRootSection, recipeGroupVanilla));
 
-            CauldronItemDropListener cauldronItemDropListener = CauldronItemDropListener.build(this, internals, undyeRootSection);
+            cauldronItemDropListener = CauldronItemDropListener.build(this, internals, permissionCache, statisticsStore, traceBuffer, undyeRootSection);
             if (cauldronItemDropListener != null) {
                 Bukkit.getPluginManager().registerEvents(cauldronItemDropListener, this);
+                bleachFamilies.addAll(cauldronItemDropListener.getEnabledFamilies());
+                if (internals.hasEntityPersistentData()) {
+                    if (internals.hasEntitiesLoadEvent())
+                        Bukkit.getPluginManager().registerEvents(new PendingEntitiesLoadListener(cauldronItemDropListener), this);
+                    else
+                        Bukkit.getPluginManager().registerEvents(new PendingChunkLoadListener(cauldronItemDropListener), this);
+                    cauldronItemDropListener.resumeLoaded();
+                }
                 this.getLogger().info("enabled cauldron bleaching for at least one item");
             }
         }
 
+        // ------------------------------------------------------------------
+        // RECIPE REGISTRATION
+        // ------------------------------------------------------------------
+
+        this.registerRecipes(configChecker);
+
         // ------------------------------------------------------------------
 
+        Bukkit.getPluginManager().registerEvents(new RedyeCraftListener(this, permissionCache, statisticsStore, traceBuffer, colorRecipeFamilies, undyeRecipeFamilies), this);
+
         if (recipeBookConnection[0]) {
             Bukkit.getServer().getPluginManager().registerEvents(new RecipeDiscoverConnectionListener(this, allKeys, recipeBookConnection[1]), this);
             ConsoleMessage.debug((Debugable) this, "registered RecipeDiscoverJoinListener");
         }
+
+        // ------------------------------------------------------------------
+        // SERVICE
+        // ------------------------------------------------------------------
+
+        bleachFamilies.addAll(undyeRecipeFamilies.values());
+        RedyeService redyeService = new SimpleRedyeService(internals, redyeMats, new HashSet<>(colorRecipeFamilies.values()), bleachFamilies);
+        this.getServer().getServicesManager().register(RedyeService.class, redyeService, this, ServicePriority.Normal);
+    }
+
+    @Override
+    public void onDisable() {
+        if (cauldronItemDropListener != null) {
+            cauldronItemDropListener.flushOutput();
+            cauldronItemDropListener = null;
+        }
+        if (vanillaRecipePruner != null) {
+            vanillaRecipePruner.restore();
+            vanillaRecipePruner = null;
+        }
+        if (statisticsStore != null) {
+            statisticsStore.close();
+            statisticsStore = null;
+        }
+
+        // the internals outlive this instance if the plugin gets enabled again without a reload
+        internals.removeCustomRedyeMaterials();
+        redyeMats.removeIf(RedyeMaterial::isCustom);
+        colorRecipeFamilies.clear();
+        undyeRecipeFamilies.clear();
+    }
+
+    private void checkVanillaRecipes(@NotNull ConfigChecker configChecker) {
+        if (!configChecker.checkBoolean(this.getConfig(), "prune_vanilla_recipes", ConsoleErrorType.WARN, false))
+            return;
+
+        // only families with color recipes of this plugin, disabled families keep their vanilla recipes
+        Set<String> vanillaFamilies = internals.getVanillaRedyeFamilies();
+        HashSet<RedyeMaterial> pruneMats = new HashSet<>();
+        for (RedyeMaterial redyeMat : redyeMats) {
+            if (vanillaFamilies.contains(redyeMat.getConfigName()) && colorRecipeFamilies.containsValue(redyeMat.getConfigName()))
+                pruneMats.add(redyeMat);
+        }
+        if (pruneMats.isEmpty())
+            return;
+
+        vanillaRecipePruner = new VanillaRecipePruner(this, internals);
+        vanillaRecipePruner.prune(pruneMats);
+        Bukkit.getPluginManager().registerEvents(new VanillaRecipeReloadListener(this, vanillaRecipePruner), this);
+    }
+
+    private void checkDebug(@NotNull ConfigChecker configChecker) {
+        ConfigurationSection section = configChecker.checkConfigSection(this.getConfig(), "debug", ConsoleErrorType.WARN);
+        if (section != null) {
+            debug = configChecker.checkBoolean(section, "console", ConsoleErrorType.WARN, false);
+            int traceBufferSize = configChecker.checkInt(section, "trace_buffer_size", ConsoleErrorType.WARN, 0, Range.closed(0, 10000));
+            if (traceBufferSize > 0) {
+                traceBuffer = new TraceBuffer(traceBufferSize);
+                this.getLogger().info("enabled trace buffer with size " + traceBufferSize);
+            }
+        }
+    }
+
+    private void checkPermissionRefresh(@NotNull ConfigChecker configChecker) {
+        ConfigurationSection section = configChecker.checkConfigSection(this.getConfig(), "permissions", ConsoleErrorType.WARN);
+        if (section != null) {
+            int refreshInterval = configChecker.checkInt(section, "refresh_interval", ConsoleErrorType.WARN, 60, Range.closed(0, 86400));
+            if (refreshInterval > 0) {
+                Bukkit.getScheduler().runTaskTimer(this, permissionCache::refreshAll, refreshInterval * 20L, refreshInterval * 20L);
+                ConsoleMessage.debug((Debugable) this, "refreshing cached permissions every " + refreshInterval + " seconds");
+            }
+        }
+    }
+
+    /**
+     * Gets the cached family permissions of online players, e.g. to refresh them after a permission change (see {@link PermissionCache#refresh(Player)}).
+     * @return the permissionCache
+     */
+    @NotNull
+    public PermissionCache getPermissionCache() {
+        return permissionCache;
+    }
+
+    private void checkStatistics(@NotNull ConfigChecker configChecker) {
+        ConfigurationSection section = configChecker.checkConfigSection(this.getConfig(), "statistics", ConsoleErrorType.WARN);
+        if (section != null && configChecker.checkBoolean(section, "enable", ConsoleErrorType.WARN, false)) {
+            int flushInterval = configChecker.checkInt(section, "flush_interval", ConsoleErrorType.WARN, 300, Range.closed(10, 86400));
+            statisticsStore = new StatisticsStore(this);
+            statisticsStore.start(flushInterval * 20L);
+            ConsoleMessage.debug((Debugable) this, "enabled statistics");
+        }
+    }
+
+    /**
+     * Gets the statistics of redyed and bleached items.
+     * @return the statisticsStore or null if statistics are disabled
+     */
+    @Nullable
+    public StatisticsStore getStatisticsStore() {
+        return statisticsStore;
+    }
+
+    private void loadCustomFamilies(@NotNull ConfigChecker configChecker) {
+        ConfigurationSection rootSection = this.getConfig().getConfigurationSection("custom_families");
+        if (rootSection == null)
+            return;
+
+        for (String configName : rootSection.getKeys(false)) {
+            ConfigurationSection section = configChecker.checkConfigSection(rootSection, configName, ConsoleErrorType.ERROR);
+            if (section == null)
+                continue;
+
+            String colorMatName = configChecker.checkString(section, "color_suffix", ConsoleErrorType.ERROR, "");
+            if (colorMatName == null || colorMatName.isEmpty() || !internals.hasColorMaterials(colorMatName.toUpperCase())) {
+                ConsoleMessage.send(ConsoleErrorType.ERROR, this, "custom family " + configName + " has no valid color_suffix (no colored material exists). Skipped.");
+                continue;
+            }
+            colorMatName = colorMatName.toUpperCase();
+
+            String undyeMatName = "";
+            if (section.contains("undye_material")) {
+                Material undyeMat = Material.matchMaterial(Objects.requireNonNull(section.getString("undye_material")));
+                if (undyeMat == null) {
+                    ConsoleMessage.send(ConsoleErrorType.ERROR, this, "custom family " + configName + " has no valid undye_material. Skipped.");
+                    continue;
+                }
+                undyeMatName = undyeMat.name();
+            } else if (Material.matchMaterial("WHITE_" + colorMatName) == null) {
+                ConsoleMessage.send(ConsoleErrorType.ERROR, this, "custom family " + configName + " needs an undye_material because WHITE_" + colorMatName + " does not exist. Skipped.");
+                continue;
+            }
+
+            int maxInput = configChecker.checkInt(section, "max_input", ConsoleErrorType.WARN, 1, Range.closed(1, 64));
+            String groupName = configChecker.checkString(section, "group", ConsoleErrorType.WARN, configName);
+
+            RedyeMaterial redyeMat = new RedyeMaterial(configName, colorMatName, undyeMatName, maxInput, groupName);
+            redyeMat.setCustom(true);
+            if (internals.addRedyeMaterial(redyeMat)) {
+                redyeMats.add(redyeMat);
+                this.getLogger().info("added custom family " + configName);
+            } else {
+                ConsoleMessage.send(ConsoleErrorType.ERROR, this, "custom family " + configName + " already exists or its color_suffix " + colorMatName + " is already used by another family. Skipped.");
+            }
+        }
     }
 
     private Set<HashSet<NamespacedKey>> checkColorRecipes(@NotNull ConfigChecker configChecker, boolean recipeGroupVanilla) {
@@ -142,7 +362,14 @@ public class Redye extends JavaPlugin implements Debugable {
             if (!recipeGroupVanilla) {
                 redyeMat.setVanillaGroupName("redye_" + redyeMat.getVanillaGroupName());
             }
-            addedKeys.add(internals.addColorRecipes(this, redyeMat));
+            HashSet<NamespacedKey> keys = new HashSet<>();
+            String tagName = (redyeMat.isUndyeable() ? "any_" : "colored_") + redyeMat.getConfigName();
+            for (ShapelessRecipe recipe : internals.createColorRecipes(this, redyeMat)) {
+                recipeDatapack.add(recipe, tagName);
+                colorRecipeFamilies.put(recipe.getKey(), redyeMat.getConfigName());
+                keys.add(recipe.getKey());
+            }
+            addedKeys.add(keys);
             ConsoleMessage.debug((Debugable) this, "added color recipes for " + redyeMat.getConfigName());
             this.getLogger().info("added color recipes for " + redyeMat.getConfigName() + " with amount " + redyeMat.getInput());
         }
@@ -176,17 +403,77 @@ public class Redye extends JavaPlugin implements Debugable {
             if (!recipeGroupVanilla) {
                 redyeMat.setVanillaGroupName("redye_" + redyeMat.getVanillaGroupName());
             }
-            addedKeys.add(internals.addUndyeRecipes(this, redyeMat.getColorMatName(), neutralDyeMat, Material.valueOf(undyeMatName), redyeMat.getInput(), redyeMat.getVanillaGroupName()));
+            ShapelessRecipe recipe = internals.createUndyeRecipe(this, redyeMat.getColorMatName(), neutralDyeMat, Material.valueOf(undyeMatName), redyeMat.getInput(), redyeMat.getVanillaGroupName());
+            recipeDatapack.add(recipe, "colored_" + redyeMat.getConfigName());
+            undyeRecipeFamilies.put(recipe.getKey(), redyeMat.getConfigName());
+            HashSet<NamespacedKey> keys = new HashSet<>();
+            keys.add(recipe.getKey());
+            addedKeys.add(keys);
             this.getLogger().info("added undye recipes for " + redyeMat.getConfigName() + " with amount " + redyeMat.getInput());
         }
         return addedKeys;
     }
 
+    /**
+     * Registers all created recipes unless they are loaded natively by the installed data pack (recipe_mode: datapack).
+     * @param configChecker the configChecker
+     */
+    private void registerRecipes(@NotNull ConfigChecker configChecker) {
+        String recipeMode = configChecker.checkString(this.getConfig(), "recipe_mode", ConsoleErrorType.WARN, "plugin");
+        boolean datapackMode = "datapack".equalsIgnoreCase(recipeMode);
+        if (!datapackMode && !"plugin".equalsIgnoreCase(recipeMode)) {
+            ConsoleMessage.send(ConsoleErrorType.WARN, this, "recipe_mode must be plugin or datapack. Used plugin instead.");
+        } else if (datapackMode && !recipeDatapack.isSupported()) {
+            ConsoleMessage.send(ConsoleErrorType.WARN, this, "recipe_mode datapack is not supported on this server version. Used plugin instead.");
+            datapackMode = false;
+        }
+
+        // data packs are loaded before plugins get enabled, so an installed data pack was loaded even if it is outdated or gets removed now
+        boolean packLoaded = false;
+        if (datapackMode) {
+            try {
+                if (!recipeDatapack.install()) {
+                    int missing = recipeDatapack.registerMissing();
+                    if (missing > 0)
+                        ConsoleMessage.send(ConsoleErrorType.WARN, this, missing + " recipes were not loaded from the installed data pack (disabled or not supported by this version). They are registered by the plugin instead.");
+                    else
+                        this.getLogger().info("recipes are loaded by the installed data pack");
+                    return;
+                }
+                packLoaded = true;
+                ConsoleMessage.send(ConsoleErrorType.WARN, this, "installed the updated recipe data pack. It will be loaded from the next restart on, until then the recipes are registered by the plugin.");
+            } catch (IOException e) {
+                packLoaded = true; // may have been partially written
+                ConsoleMessage.send(ConsoleErrorType.ERROR, this, "could not install the recipe data pack (" + e.getMessage() + "). The recipes are registered by the plugin instead.");
+            }
+        } else {
+            try {
+                if (recipeDatapack.uninstall()) {
+                    packLoaded = true;
+                    this.getLogger().info("removed the installed recipe data pack because recipe_mode is plugin");
+                }
+            } catch (IOException e) {
+                packLoaded = true;
+                ConsoleMessage.send(ConsoleErrorType.ERROR, this, "could not remove the installed recipe data pack (" + e.getMessage() + ").");
+            }
+        }
+
+        recipeDatapack.register(packLoaded);
+    }
+
     @NotNull
     public Set<RedyeMaterial> getEnabledRedyeMaterials(@NotNull ConfigChecker configChecker, @Nullable ConfigurationSection section, int maxInput) {
         HashSet<RedyeMaterial> enabledMaterials = new HashSet<>();
         if (section != null) {
             for (RedyeMaterial redyeMat : new HashSet<>(internals.getDefaultRedyeMaterials())) {
+                if (redyeMat.isCustom()) { // custom families are optional in every section and bounded by their max_input (input)
+                    if (section.contains(redyeMat.getConfigName())) {
+                        redyeMat.setInput(configChecker.checkInt(section, redyeMat.getConfigName(), ConsoleErrorType.WARN, 0, Range.closed(0, Math.min(maxInput, redyeMat.getInput()))));
+                        if (redyeMat.getInput() > 0)
+                            enabledMaterials.add(redyeMat);
+                    }
+                    continue;
+                }
                 redyeMat.setInput(configChecker.checkInt(section, redyeMat.getConfigName(), ConsoleErrorType.WARN, redyeMat.getInput(), Range.closed(0, maxInput)));
                 if (redyeMat.getInput() > 0)
                     enabledMaterials.add(redyeMat);
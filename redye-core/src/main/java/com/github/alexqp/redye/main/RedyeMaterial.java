@@ -26,6 +26,7 @@ public class RedyeMaterial {
     private int input;
     private String vanillaGroupName;
     private boolean isUndyeable = false; // Can you dye the undyed variant of the material type normally?
+    private boolean isCustom = false; // Was the material type defined by the config?
 
 
     public RedyeMaterial(String configName, String colorMatName, String undyeMatName, int input, String vanillaGroupName, boolean isUndyeable) {
@@ -77,11 +78,21 @@ public class RedyeMaterial {
         return isUndyeable;
     }
 
+    public boolean isCustom() {
+        return isCustom;
+    }
+
+    public void setCustom(boolean isCustom) {
+        this.isCustom = isCustom;
+    }
+
     public boolean hasUndyeMatName() {
         return !this.getUndyeMatName().isEmpty();
     }
 
     public RedyeMaterial copy() {
-        return new RedyeMaterial(configName, colorMatName, undyeMatName, input, vanillaGroupName, isUndyeable);
+        RedyeMaterial copy = new RedyeMaterial(configName, colorMatName, undyeMatName, input, vanillaGroupName, isUndyeable);
+        copy.setCustom(isCustom);
+        return copy;
     }
 }
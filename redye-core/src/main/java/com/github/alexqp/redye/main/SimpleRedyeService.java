@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.main;
+
+import com.github.alexqp.redye.api.RedyeService;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * {@link RedyeService} backed by EnumMap/EnumSet tables which are built once on enable and never modified afterwards.
+ */
+class SimpleRedyeService implements RedyeService {
+
+    private final EnumMap<Material, Material> undyedMaterials = new EnumMap<>(Material.class);
+    private final EnumMap<Material, Integer> dyeColors = new EnumMap<>(Material.class); // dye -> color index
+    private final EnumMap<Material, Material[]> dyedVariants = new EnumMap<>(Material.class); // redyeable -> result by color index
+    private final EnumSet<Material> bleachable = EnumSet.noneOf(Material.class);
+
+    /**
+     * @param internals the internals
+     * @param redyeMats all redye materials
+     * @param redyeFamilies the config names of all families with enabled color recipes
+     * @param bleachFamilies the config names of all families with enabled bleaching (recipes or cauldron)
+     */
+    SimpleRedyeService(@NotNull InternalsProvider internals, @NotNull Collection<RedyeMaterial> redyeMats, @NotNull Set<String> redyeFamilies, @NotNull Set<String> bleachFamilies) {
+        List<String> colorPrefixes = new ArrayList<>(internals.getColorMap().keySet());
+        Collections.sort(colorPrefixes);
+        for (int i = 0; i < colorPrefixes.size(); i++) {
+            dyeColors.put(internals.getColorMap().get(colorPrefixes.get(i)), i);
+        }
+
+        // family membership comes from the compiled lookup of the internals, only the color of each material is resolved here
+        EnumMap<Material, RedyeMaterial> lookup = internals.createLookup(redyeMats);
+        HashMap<String, Material[]> familyVariants = new HashMap<>();
+        for (Map.Entry<Material, RedyeMaterial> entry : lookup.entrySet()) {
+            Material[] variants = familyVariants.computeIfAbsent(entry.getValue().getConfigName(), k -> new Material[colorPrefixes.size()]);
+            for (int i = 0; i < colorPrefixes.size(); i++) {
+                if (entry.getKey().name().equals(colorPrefixes.get(i) + entry.getValue().getColorMatName()))
+                    variants[i] = entry.getKey();
+            }
+        }
+
+        for (Map.Entry<Material, RedyeMaterial> entry : lookup.entrySet()) {
+            Material mat = entry.getKey();
+            RedyeMaterial redyeMat = entry.getValue();
+            Material undyeMat = this.getUndyeMaterial(redyeMat);
+            if (undyeMat != null && undyeMat != mat)
+                undyedMaterials.put(mat, undyeMat);
+            if (redyeFamilies.contains(redyeMat.getConfigName()))
+                dyedVariants.put(mat, familyVariants.get(redyeMat.getConfigName()));
+            if (bleachFamilies.contains(redyeMat.getConfigName()) && undyeMat != mat)
+                bleachable.add(mat);
+        }
+
+        for (RedyeMaterial redyeMat : redyeMats) {
+            Material undyeMat = this.getUndyeMaterial(redyeMat);
+            Material[] variants = familyVariants.get(redyeMat.getConfigName());
+            if (redyeMat.isUndyeable() && undyeMat != null && variants != null && redyeFamilies.contains(redyeMat.getConfigName()))
+                dyedVariants.put(undyeMat, variants);
+        }
+    }
+
+    @Nullable
+    private Material getUndyeMaterial(@NotNull RedyeMaterial redyeMat) {
+        return Material.matchMaterial(redyeMat.hasUndyeMatName() ? redyeMat.getUndyeMatName() : "WHITE_" + redyeMat.getColorMatName());
+    }
+
+    @Override
+    public boolean isRedyeable(@NotNull Material material) {
+        return dyedVariants.containsKey(material);
+    }
+
+    @Override
+    public boolean isBleachable(@NotNull Material material) {
+        return bleachable.contains(material);
+    }
+
+    @Override
+    public @Nullable Material getUndyedMaterial(@NotNull Material material) {
+        return undyedMaterials.get(material);
+    }
+
+    @Override
+    public @Nullable Material getDyedMaterial(@NotNull Material material, @NotNull Material dye) {
+        Material[] variants = dyedVariants.get(material);
+        Integer color = dyeColors.get(dye);
+        if (variants == null || color == null)
+            return null;
+        return variants[color];
+    }
+
+    @Override
+    public int countRedyeable(@NotNull ItemStack[] contents) {
+        int amount = 0;
+        for (ItemStack item : contents) {
+            if (item != null && dyedVariants.containsKey(item.getType()))
+                amount += item.getAmount();
+        }
+        return amount;
+    }
+
+    @Override
+    public int countBleachable(@NotNull ItemStack[] contents) {
+        int amount = 0;
+        for (ItemStack item : contents) {
+            if (item != null && bleachable.contains(item.getType()))
+                amount += item.getAmount();
+        }
+        return amount;
+    }
+
+    @Override
+    public int getUndyedMaterials(@NotNull ItemStack[] contents, @NotNull Material[] result) {
+        int found = 0;
+        for (int i = 0; i < contents.length; i++) {
+            result[i] = contents[i] != null ? undyedMaterials.get(contents[i].getType()) : null;
+            if (result[i] != null)
+                found++;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.main;
+
+import com.github.alexqp.commons.config.ConsoleErrorType;
+import com.github.alexqp.commons.messages.ConsoleMessage;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Per-player counts of redyed and bleached items.
+ * <p>Increments are aggregated in memory (main thread only) and written to a flat file asynchronously in batches on an interval and at shutdown.</p>
+ */
+public class StatisticsStore {
+
+    public enum Type {
+        REDYED("redyed"),
+        BLEACHED("bleached");
+
+        private final String configName;
+
+        Type(String configName) {
+            this.configName = configName;
+        }
+
+        public String getConfigName() {
+            return configName;
+        }
+    }
+
+    private static final String fileName = "stats.yml";
+
+    private final JavaPlugin plugin;
+    private final File file;
+
+    private final HashMap<UUID, long[]> counts = new HashMap<>();
+    private final HashMap<UUID, String> names = new HashMap<>();
+    private boolean dirty = false;
+
+    private final Object fileLock = new Object();
+    private long snapshotNo = 0;
+    private volatile long writtenSnapshotNo = 0;
+
+    private BukkitTask flushTask;
+
+    StatisticsStore(@NotNull JavaPlugin plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), fileName);
+    }
+
+    /**
+     * Loads the stored statistics (blocking) and starts flushing them every interval.
+     * @param intervalTicks the flush interval in ticks
+     */
+    void start(long intervalTicks) {
+        this.load();
+        flushTask = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> this.flush(true), intervalTicks, intervalTicks);
+    }
+
+    /**
+     * Stops flushing and writes all statistics (blocking).
+     */
+    void close() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        if (snapshotNo > writtenSnapshotNo) // pending async writes may get cancelled on disable
+            dirty = true;
+        this.flush(false);
+    }
+
+    private void load() {
+        if (!file.exists())
+            return;
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        for (String key : config.getKeys(false)) {
+            ConfigurationSection section = config.getConfigurationSection(key);
+            if (section == null)
+                continue;
+            try {
+                UUID uuid = UUID.fromString(key);
+                long[] values = new long[Type.values().length];
+                for (Type type : Type.values()) {
+                    values[type.ordinal()] = section.getLong(type.getConfigName());
+                }
+                counts.put(uuid, values);
+                names.put(uuid, section.getString("name", key));
+            } catch (IllegalArgumentException e) {
+                ConsoleMessage.send(ConsoleErrorType.WARN, plugin, fileName + " contains invalid uuid " + key + ". Skipped.");
+            }
+        }
+    }
+
+    private void flush(boolean async) {
+        if (!dirty)
+            return;
+        dirty = false;
+
+        final long no = ++snapshotNo;
+        final HashMap<UUID, long[]> countsSnapshot = new HashMap<>();
+        for (Map.Entry<UUID, long[]> entry : counts.entrySet()) {
+            countsSnapshot.put(entry.getKey(), entry.getValue().clone());
+        }
+        final HashMap<UUID, String> namesSnapshot = new HashMap<>(names);
+
+        if (async)
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> this.write(countsSnapshot, namesSnapshot, no));
+        else
+            this.write(countsSnapshot, namesSnapshot, no);
+    }
+
+    private void write(@NotNull Map<UUID, long[]> countsSnapshot, @NotNull Map<UUID, String> namesSnapshot, long no) {
+        YamlConfiguration config = new YamlConfiguration();
+        for (Map.Entry<UUID, long[]> entry : countsSnapshot.entrySet()) {
+            String key = entry.getKey().toString();
+            config.set(key + ".name", namesSnapshot.get(entry.getKey()));
+            for (Type type : Type.values()) {
+                config.set(key + "." + type.getConfigName(), entry.getValue()[type.ordinal()]);
+            }
+        }
+
+        synchronized (fileLock) {
+            if (no <= writtenSnapshotNo) // a newer snapshot was already written
+                return;
+            try {
+                config.save(file);
+                writtenSnapshotNo = no;
+            } catch (IOException e) {
+                ConsoleMessage.send(ConsoleErrorType.ERROR, plugin, "could not save " + fileName + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds an amount of items to the statistics of a player.
+     * <p>Note: Must be called from the main thread.</p>
+     * @param player the player
+     * @param type the statistic type
+     * @param amount the amount of items
+     */
+    public void increment(@NotNull OfflinePlayer player, @NotNull Type type, int amount) {
+        if (amount <= 0)
+            return;
+        long[] values = counts.computeIfAbsent(player.getUniqueId(), k -> new long[Type.values().length]);
+        values[type.ordinal()] += amount;
+        if (player.getName() != null)
+            names.put(player.getUniqueId(), player.getName());
+        dirty = true;
+    }
+
+    public long getCount(@NotNull UUID uuid, @NotNull Type type) {
+        long[] values = counts.get(uuid);
+        return values != null ? values[type.ordinal()] : 0;
+    }
+
+    /**
+     * Gets the last known name of a player.
+     * @param uuid the player's uuid
+     * @return the name or null if the player has no statistics
+     */
+    @Nullable
+    public String getName(@NotNull UUID uuid) {
+        return names.get(uuid);
+    }
+
+    /**
+     * Gets the uuid of a player by their last known name (case-insensitive).
+     * @param name the name
+     * @return the uuid or null if no player with statistics has this name
+     */
+    @Nullable
+    public UUID getUUID(@NotNull String name) {
+        for (Map.Entry<UUID, String> entry : names.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getValue()))
+                return entry.getKey();
+        }
+        return null;
+    }
+
+    /**
+     * Gets the players with the highest counts.
+     * @param type the statistic type
+     * @param limit the maximum amount of players
+     * @return the uuids of the players in descending order of their count
+     */
+    @NotNull
+    public List<UUID> getTop(@NotNull Type type, int limit) {
+        List<UUID> uuids = new ArrayList<>(counts.keySet());
+        uuids.sort(Comparator.comparingLong((UUID uuid) -> counts.get(uuid)[type.ordinal()]).reversed());
+        return uuids.subList(0, Math.min(limit, uuids.size()));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.main;
+
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Fixed-size ring buffer of the most recent transformation decisions.
+ * <p>Entries are stored in preallocated arrays, so recording does not allocate. Must only be used from the main thread.</p>
+ */
+public class TraceBuffer {
+
+    public enum Decision {
+        NO_FAMILY, // the item belongs to a family which is not enabled for cauldron bleaching
+        NO_PERMISSION,
+        ALREADY_UNDYED,
+        SCHEDULED,
+        RESCHEDULED,
+        RESUMED,
+        NO_CAULDRON,
+        NOT_ENOUGH_WATER,
+        BLEACHED,
+        CRAFT_DENIED
+    }
+
+    private final long[] times;
+    private final Decision[] decisions;
+    private final Material[] materials;
+    private final int[] amounts;
+    private final String[] worlds;
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] zs;
+
+    private int next = 0;
+    private int size = 0;
+
+    public TraceBuffer(int capacity) {
+        times = new long[capacity];
+        decisions = new Decision[capacity];
+        materials = new Material[capacity];
+        amounts = new int[capacity];
+        worlds = new String[capacity];
+        xs = new int[capacity];
+        ys = new int[capacity];
+        zs = new int[capacity];
+    }
+
+    /**
+     * Records a decision and overwrites the oldest one if the buffer is full.
+     * @param decision the decision
+     * @param material the affected material
+     * @param amount the affected amount
+     * @param block the affected block (e.g. the cauldron) or null if unknown
+     */
+    public void record(@NotNull Decision decision, @Nullable Material material, int amount, @Nullable Block block) {
+        times[next] = System.currentTimeMillis();
+        decisions[next] = decision;
+        materials[next] = material;
+        amounts[next] = amount;
+        if (block != null) {
+            worlds[next] = block.getWorld().getName();
+            xs[next] = block.getX();
+            ys[next] = block.getY();
+            zs[next] = block.getZ();
+        } else {
+            worlds[next] = null;
+        }
+
+        next = (next + 1) % times.length;
+        size = Math.min(size + 1, times.length);
+    }
+
+    /**
+     * Formats all recorded decisions.
+     * @return the decisions from oldest to newest
+     */
+    @NotNull
+    public List<String> dump() {
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss.SSS");
+        List<String> lines = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int index = (next - size + i + times.length) % times.length;
+            String line = format.format(new Date(times[index])) + " " + decisions[index] + " " + materials[index] + " x" + amounts[index];
+            if (worlds[index] != null)
+                line += " at " + worlds[index] + " " + xs[index] + "," + ys[index] + "," + zs[index];
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    public void clear() {
+        next = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.main;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Keyed;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.inventory.Recipe;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Removes the vanilla redye recipes (1.20 onwards, e.g. minecraft:dye_red_wool) which overlap with the recipes of this plugin and restores them on disable.
+ * <p>Reloading data packs restores the vanilla recipes, so they get pruned again once a reload is noticed (see {@link #isPruned(Recipe)}).</p>
+ */
+public class VanillaRecipePruner {
+
+    private static final String vanillaKeyPrefix = "dye_";
+
+    private final JavaPlugin plugin;
+    private final InternalsProvider internals;
+    private final List<Recipe> removedRecipes = new ArrayList<>();
+    private final EnumSet<Material> targets = EnumSet.noneOf(Material.class);
+
+    VanillaRecipePruner(@NotNull JavaPlugin plugin, @NotNull InternalsProvider internals) {
+        this.plugin = plugin;
+        this.internals = internals;
+    }
+
+    /**
+     * Removes the vanilla redye recipes of the given families by scanning all recipes once.
+     * @param redyeMats the families
+     */
+    void prune(@NotNull Collection<RedyeMaterial> redyeMats) {
+        targets.addAll(internals.createLookup(redyeMats).keySet());
+        this.prune();
+    }
+
+    private void prune() {
+        long start = System.nanoTime();
+        if (targets.isEmpty())
+            return;
+
+        // index all recipes by result
+        EnumMap<Material, List<Recipe>> recipesByResult = new EnumMap<>(Material.class);
+        int scanned = 0;
+        int removed = 0;
+        Iterator<Recipe> iterator = Bukkit.recipeIterator();
+        while (iterator.hasNext()) {
+            Recipe recipe = iterator.next();
+            scanned++;
+            if (recipe != null && targets.contains(recipe.getResult().getType()))
+                recipesByResult.computeIfAbsent(recipe.getResult().getType(), k -> new ArrayList<>()).add(recipe);
+        }
+
+        for (List<Recipe> recipes : recipesByResult.values()) {
+            for (Recipe recipe : recipes) {
+                if (!(recipe instanceof Keyed))
+                    continue;
+                NamespacedKey key = ((Keyed) recipe).getKey();
+                if (this.isVanillaRedyeKey(key) && Bukkit.removeRecipe(key)) {
+                    removedRecipes.add(recipe);
+                    removed++;
+                    DebugLog.debug(VanillaRecipePruner.class, plugin, "removed vanilla recipe ", key);
+                }
+            }
+        }
+
+        plugin.getLogger().info("removed " + removed + " vanilla redye recipes (scanned " + scanned + " recipes in "
+                + (System.nanoTime() - start) / 1000000 + " ms)");
+    }
+
+    private boolean isVanillaRedyeKey(@NotNull NamespacedKey key) {
+        return key.getNamespace().equals(NamespacedKey.MINECRAFT) && key.getKey().startsWith(vanillaKeyPrefix);
+    }
+
+    /**
+     * Checks if a recipe is one of the pruned vanilla recipes, i.e. it got restored by a data pack reload.
+     * @param recipe the recipe
+     * @return true if the recipe should have been pruned, false otherwise
+     */
+    public boolean isPruned(@Nullable Recipe recipe) {
+        return recipe instanceof Keyed && targets.contains(recipe.getResult().getType()) && this.isVanillaRedyeKey(((Keyed) recipe).getKey());
+    }
+
+    /**
+     * Prunes the vanilla recipes again after a data pack reload restored them.
+     */
+    public void pruneAgain() {
+        removedRecipes.clear(); // the removed recipes were replaced by the reloaded ones
+        this.prune();
+    }
+
+    /**
+     * Adds all removed vanilla recipes again (e.g. on disable to support reloads).
+     */
+    void restore() {
+        int restored = 0;
+        for (Recipe recipe : removedRecipes) {
+            try {
+                if (Bukkit.addRecipe(recipe))
+                    restored++;
+            } catch (IllegalStateException ignored) {} // recipe was already restored (e.g. by a data pack reload)
+        }
+        DebugLog.debug(VanillaRecipePruner.class, plugin, "restored vanilla recipes: ", restored);
+        removedRecipes.clear();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.listeners;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CauldronOutputConsolidatorTest {
+
+    // ItemStack#isSimilar asks the item factory whether the stacks have item meta
+    @BeforeAll
+    static void setUpServer() {
+        if (Bukkit.getServer() != null)
+            return;
+        ItemFactory itemFactory = mock(ItemFactory.class);
+        when(itemFactory.equals(any(), any())).thenReturn(true);
+        Server server = mock(Server.class);
+        when(server.getLogger()).thenReturn(Logger.getLogger(CauldronOutputConsolidatorTest.class.getName()));
+        when(server.getItemFactory()).thenReturn(itemFactory);
+        Bukkit.setServer(server);
+    }
+
+    @Test
+    void mergesSimilarStacks() {
+        List<ItemStack> merged = CauldronOutputConsolidator.merge(Arrays.asList(
+                new ItemStack(Material.WHITE_WOOL, 10), new ItemStack(Material.RED_WOOL, 3), new ItemStack(Material.WHITE_WOOL, 20)));
+
+        assertEquals(2, merged.size());
+        assertEquals(new ItemStack(Material.WHITE_WOOL, 30), merged.get(0));
+        assertEquals(new ItemStack(Material.RED_WOOL, 3), merged.get(1));
+    }
+
+    @Test
+    void splitsAtMaxStackSize() {
+        List<ItemStack> merged = CauldronOutputConsolidator.merge(Arrays.asList(
+                new ItemStack(Material.WHITE_WOOL, 40), new ItemStack(Material.WHITE_WOOL, 40), new ItemStack(Material.WHITE_WOOL, 40)));
+
+        assertEquals(2, merged.size());
+        assertEquals(64, merged.get(0).getAmount());
+        assertEquals(56, merged.get(1).getAmount());
+    }
+
+    @Test
+    void respectsSmallerMaxStackSizes() {
+        List<ItemStack> merged = CauldronOutputConsolidator.merge(Arrays.asList(
+                new ItemStack(Material.WHITE_BANNER, 10), new ItemStack(Material.WHITE_BANNER, 10)));
+
+        assertEquals(2, merged.size());
+        assertEquals(16, merged.get(0).getAmount());
+        assertEquals(4, merged.get(1).getAmount());
+    }
+
+    @Test
+    void doesNotModifyTheInput() {
+        ItemStack first = new ItemStack(Material.WHITE_WOOL, 60);
+        ItemStack second = new ItemStack(Material.WHITE_WOOL, 60);
+        CauldronOutputConsolidator.merge(Arrays.asList(first, second));
+
+        assertEquals(60, first.getAmount());
+        assertEquals(60, second.getAmount());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.main;
+
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PermissionCacheTest {
+
+    private PermissionCache permissionCache;
+    private Player player;
+
+    @BeforeEach
+    void setUp() {
+        permissionCache = new PermissionCache(Arrays.asList(
+                new RedyeMaterial("wool", "WOOL", 1, "wool"),
+                new RedyeMaterial("glass", "STAINED_GLASS", "GLASS", 8, "stained_glass")));
+
+        player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.hasPermission("redye.craft.wool")).thenReturn(true);
+        when(player.hasPermission("redye.bleach.wool")).thenReturn(false);
+        when(player.hasPermission("redye.craft.glass")).thenReturn(false);
+        when(player.hasPermission("redye.bleach.glass")).thenReturn(true);
+    }
+
+    @Test
+    void separatesCraftAndBleachPermissions() {
+        permissionCache.refresh(player);
+
+        assertTrue(permissionCache.canCraft(player, "wool"));
+        assertFalse(permissionCache.canBleach(player, "wool"));
+        assertFalse(permissionCache.canCraft(player, "glass"));
+        assertTrue(permissionCache.canBleach(player, "glass"));
+    }
+
+    @Test
+    void checksDoNotQueryThePermissionBackend() {
+        permissionCache.refresh(player);
+        for (int i = 0; i < 10; i++) {
+            permissionCache.canCraft(player, "wool");
+            permissionCache.canBleach(player, "glass");
+        }
+
+        verify(player, times(4)).hasPermission(anyString());
+    }
+
+    @Test
+    void refreshPicksUpChangedPermissions() {
+        permissionCache.refresh(player);
+        when(player.hasPermission("redye.craft.wool")).thenReturn(false);
+        assertTrue(permissionCache.canCraft(player, "wool"));
+
+        permissionCache.refresh(player);
+        assertFalse(permissionCache.canCraft(player, "wool"));
+    }
+
+    @Test
+    void resolvesUncachedPlayersOnce() {
+        permissionCache.invalidate(player.getUniqueId());
+
+        assertTrue(permissionCache.canCraft(player, "wool"));
+        assertTrue(permissionCache.canBleach(player, "glass"));
+        verify(player, times(4)).hasPermission(anyString());
+    }
+
+    @Test
+    void allowsUnknownFamilies() {
+        permissionCache.refresh(player);
+
+        assertTrue(permissionCache.canCraft(player, "candle"));
+        assertTrue(permissionCache.canBleach(player, "candle"));
+    }
+}
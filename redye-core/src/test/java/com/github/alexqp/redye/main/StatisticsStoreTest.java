@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.main;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StatisticsStoreTest {
+
+    @TempDir
+    File dataFolder;
+
+    private JavaPlugin plugin;
+
+    @BeforeEach
+    void setUp() {
+        Server server = mock(Server.class);
+        when(server.getScheduler()).thenReturn(mock(BukkitScheduler.class));
+        plugin = mock(JavaPlugin.class);
+        when(plugin.getDataFolder()).thenReturn(dataFolder);
+        when(plugin.getServer()).thenReturn(server);
+    }
+
+    private OfflinePlayer player(String name) {
+        OfflinePlayer player = mock(OfflinePlayer.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.getName()).thenReturn(name);
+        return player;
+    }
+
+    @Test
+    void aggregatesIncrementsPerType() {
+        StatisticsStore store = new StatisticsStore(plugin);
+        OfflinePlayer player = this.player("Alex");
+
+        store.increment(player, StatisticsStore.Type.REDYED, 8);
+        store.increment(player, StatisticsStore.Type.REDYED, 3);
+        store.increment(player, StatisticsStore.Type.BLEACHED, 64);
+        store.increment(player, StatisticsStore.Type.BLEACHED, 0);
+
+        assertEquals(11, store.getCount(player.getUniqueId(), StatisticsStore.Type.REDYED));
+        assertEquals(64, store.getCount(player.getUniqueId(), StatisticsStore.Type.BLEACHED));
+        assertEquals(0, store.getCount(UUID.randomUUID(), StatisticsStore.Type.REDYED));
+        assertEquals("Alex", store.getName(player.getUniqueId()));
+        assertEquals(player.getUniqueId(), store.getUUID("alex"));
+    }
+
+    @Test
+    void ranksPlayersByCount() {
+        StatisticsStore store = new StatisticsStore(plugin);
+        OfflinePlayer first = this.player("first");
+        OfflinePlayer second = this.player("second");
+        OfflinePlayer third = this.player("third");
+        store.increment(second, StatisticsStore.Type.REDYED, 5);
+        store.increment(first, StatisticsStore.Type.REDYED, 10);
+        store.increment(third, StatisticsStore.Type.REDYED, 1);
+
+        assertEquals(Arrays.asList(first.getUniqueId(), second.getUniqueId(), third.getUniqueId()), store.getTop(StatisticsStore.Type.REDYED, 10));
+        assertEquals(Arrays.asList(first.getUniqueId(), second.getUniqueId()), store.getTop(StatisticsStore.Type.REDYED, 2));
+    }
+
+    @Test
+    void closeWritesSnapshotWhichGetsLoadedAgain() {
+        StatisticsStore store = new StatisticsStore(plugin);
+        OfflinePlayer player = this.player("Alex");
+        store.increment(player, StatisticsStore.Type.BLEACHED, 16);
+        store.close();
+        assertTrue(new File(dataFolder, "stats.yml").isFile());
+
+        StatisticsStore loadedStore = new StatisticsStore(plugin);
+        loadedStore.start(20);
+        assertEquals(16, loadedStore.getCount(player.getUniqueId(), StatisticsStore.Type.BLEACHED));
+        assertEquals("Alex", loadedStore.getName(player.getUniqueId()));
+    }
+
+    @Test
+    void snapshotIsNotAffectedByLaterIncrements() {
+        StatisticsStore store = new StatisticsStore(plugin);
+        OfflinePlayer player = this.player("Alex");
+        store.increment(player, StatisticsStore.Type.REDYED, 1);
+        store.close();
+        store.increment(player, StatisticsStore.Type.REDYED, 1); // not flushed
+
+        StatisticsStore loadedStore = new StatisticsStore(plugin);
+        loadedStore.start(20);
+        assertEquals(1, loadedStore.getCount(player.getUniqueId(), StatisticsStore.Type.REDYED));
+    }
+}
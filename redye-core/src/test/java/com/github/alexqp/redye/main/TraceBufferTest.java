@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2018-2024 Alexander Schmid
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.alexqp.redye.main;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TraceBufferTest {
+
+    @Test
+    void keepsRecordsFromOldestToNewest() {
+        TraceBuffer traceBuffer = new TraceBuffer(3);
+        traceBuffer.record(TraceBuffer.Decision.SCHEDULED, Material.RED_WOOL, 1, null);
+        traceBuffer.record(TraceBuffer.Decision.BLEACHED, Material.RED_WOOL, 2, null);
+
+        List<String> lines = traceBuffer.dump();
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith("SCHEDULED RED_WOOL x1"));
+        assertTrue(lines.get(1).endsWith("BLEACHED RED_WOOL x2"));
+    }
+
+    @Test
+    void overwritesOldestRecordsWhenFull() {
+        TraceBuffer traceBuffer = new TraceBuffer(3);
+        for (int i = 1; i <= 5; i++) {
+            traceBuffer.record(TraceBuffer.Decision.BLEACHED, Material.BLUE_WOOL, i, null);
+        }
+
+        List<String> lines = traceBuffer.dump();
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).endsWith("x3"));
+        assertTrue(lines.get(1).endsWith("x4"));
+        assertTrue(lines.get(2).endsWith("x5"));
+    }
+
+    @Test
+    void includesBlockLocation() {
+        World world = mock(World.class);
+        when(world.getName()).thenReturn("world");
+        Block block = mock(Block.class);
+        when(block.getWorld()).thenReturn(world);
+        when(block.getX()).thenReturn(1);
+        when(block.getY()).thenReturn(64);
+        when(block.getZ()).thenReturn(-3);
+
+        TraceBuffer traceBuffer = new TraceBuffer(1);
+        traceBuffer.record(TraceBuffer.Decision.NOT_ENOUGH_WATER, Material.GLASS, 8, block);
+        assertTrue(traceBuffer.dump().get(0).endsWith("NOT_ENOUGH_WATER GLASS x8 at world 1,64,-3"));
+
+        traceBuffer.record(TraceBuffer.Decision.CRAFT_DENIED, Material.GLASS, 8, null);
+        assertTrue(traceBuffer.dump().get(0).endsWith("CRAFT_DENIED GLASS x8")); // location of the overwritten record must not leak
+    }
+
+    @Test
+    void clearRemovesAllRecords() {
+        TraceBuffer traceBuffer = new TraceBuffer(2);
+        traceBuffer.record(TraceBuffer.Decision.NO_FAMILY, Material.RED_CANDLE, 1, null);
+        traceBuffer.clear();
+        assertTrue(traceBuffer.dump().isEmpty());
+
+        traceBuffer.record(TraceBuffer.Decision.RESUMED, Material.RED_CANDLE, 1, null);
+        assertEquals(1, traceBuffer.dump().size());
+    }
+}
@@ -26,6 +26,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Set;
 
 public class Internals_v1_13_2 extends InternalsProvider {
 
@@ -65,6 +66,31 @@ public class Internals_v1_13_2 extends InternalsProvider {
         redyeMats.add(new RedyeMaterial("bed", "BED", 1, "bed"));
     }
 
+    @Override
+    public boolean hasEntityPersistentData() {
+        return false;
+    }
+
+    @Override
+    public @NotNull Set<String> getVanillaRedyeFamilies() {
+        return new HashSet<>();
+    }
+
+    @Override
+    public boolean supportsRecipeDatapack() {
+        return false;
+    }
+
+    @Override
+    public boolean canRemoveRecipes() {
+        return false;
+    }
+
+    @Override
+    public boolean hasEntitiesLoadEvent() {
+        return false;
+    }
+
     @Override
     public Material getWaterCauldron() {
         return Material.CAULDRON;